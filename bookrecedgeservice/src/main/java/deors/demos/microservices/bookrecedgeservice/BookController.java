@@ -1,19 +1,49 @@
 package deors.demos.microservices.bookrecedgeservice;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.client.circuitbreaker.CircuitBreaker;
 import org.springframework.cloud.client.circuitbreaker.CircuitBreakerFactory;
+import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreaker;
+import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreakerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ResponseStatusException;
+
+import deors.demos.microservices.common.ServerTimings;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker.State;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import reactor.core.publisher.Mono;
 
 @RestController
 public class BookController {
 
+    private static final String CIRCUIT_BREAKER_STAGE = "cb";
+
+    private static final String SERVICE_STAGE = "bookrec";
+
     @Autowired
     private RestTemplate restTemplate;
 
+    @Autowired
+    private WebClient.Builder webClientBuilder;
+
+    private WebClient webClient;
+
     @Value("${defaultBookId}")
     private long defaultBookId;
 
@@ -23,18 +53,183 @@ public class BookController {
     @Value("${defaultBookAuthor}")
     private String defaultBookAuthor;
 
+    @Value("${bookrecedge.maxCount:100}")
+    private int maxCount;
+
     @Autowired
     private CircuitBreakerFactory circuitBreakerFactory;
 
+    @Autowired
+    private ReactiveCircuitBreakerFactory reactiveCircuitBreakerFactory;
+
+    @Autowired
+    private Bulkhead reactiveBookrecBulkhead;
+
+    private CircuitBreaker circuitBreaker;
+
+    private ReactiveCircuitBreaker reactiveCircuitBreaker;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    private io.github.resilience4j.circuitbreaker.CircuitBreaker bookrecCircuitBreaker;
+
+    @Autowired
+    private RecommendationPrefetcher recommendationPrefetcher;
+
+    @Autowired
+    private RecentRecommendationsCache recentRecommendationsCache;
+
+    @Autowired
+    private HedgedBookrecClient hedgedBookrecClient;
+
+    @Autowired
+    private RequestDeadlinePropagation requestDeadlinePropagation;
+
+    private Book defaultBook;
+
+    @PostConstruct
+    public void init() {
+        webClient = webClientBuilder.build();
+        // created once, instead of resolving their configuration on every request
+        circuitBreaker = circuitBreakerFactory.create("bookrec");
+        reactiveCircuitBreaker = reactiveCircuitBreakerFactory.create("bookrec");
+        bookrecCircuitBreaker = circuitBreakerRegistry.circuitBreaker("bookrec");
+        // built once, instead of on every fallback
+        defaultBook = new Book(defaultBookId, defaultBookTitle, defaultBookAuthor);
+    }
+
     @RequestMapping("/bookrecedge")
     public Book getBookRecommendation() {
-        CircuitBreaker circuitBreaker = circuitBreakerFactory.create("bookrec");
-        return circuitBreaker.run(
-            () -> restTemplate.getForObject("http://bookrecservice/bookrec", Book.class),
-            throwable -> getDefaultBook());
+        Optional<Book> prefetched = recommendationPrefetcher.take();
+        if (prefetched.isPresent()) {
+            return prefetched.get();
+        }
+        ServerTimings timings = ServerTimings.current();
+        // taken when the time limiter starts, and kept for every call made for this request
+        long deadline = requestDeadlinePropagation.newDeadline();
+        if (hedgedBookrecClient.isEnabled()) {
+            return timings.time(CIRCUIT_BREAKER_STAGE, () -> circuitBreaker.run(
+                () -> record(timings.time(SERVICE_STAGE, () -> hedgedBookrecClient.recommend()
+                    .contextWrite(requestDeadlinePropagation.deadlineContext(deadline)).block())),
+                throwable -> getFallbackBook()));
+        }
+        return timings.time(CIRCUIT_BREAKER_STAGE, () -> circuitBreaker.run(
+            () -> record(call(timings, deadline, () -> restTemplate.getForEntity("http://bookrecservice/bookrec", Book.class))),
+            throwable -> getFallbackBook()));
+    }
+
+    @RequestMapping(path = "/bookrecedge", params = "count")
+    public List<Book> getBookRecommendations(@RequestParam int count) {
+        // reject bad input here, so that it is not counted as a downstream failure by the circuit breaker
+        if (count < 1 || count > maxCount) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "count must be between 1 and " + maxCount);
+        }
+        ServerTimings timings = ServerTimings.current();
+        long deadline = requestDeadlinePropagation.newDeadline();
+        return timings.time(CIRCUIT_BREAKER_STAGE, () -> circuitBreaker.run(
+            () -> recordAll(Arrays.asList(call(timings, deadline,
+                () -> restTemplate.getForEntity("http://bookrecservice/bookrec?count={count}", Book[].class, count)))),
+            throwable -> getFallbackBooks(count)));
+    }
+
+    // the servlet thread is released while waiting for bookrecservice, and resumed to write the response
+    @RequestMapping("/bookrecedge/reactive")
+    public Mono<Book> getBookRecommendationReactive() {
+        Optional<Book> prefetched = recommendationPrefetcher.take();
+        if (prefetched.isPresent()) {
+            return Mono.just(prefetched.get());
+        }
+        ServerTimings timings = ServerTimings.current();
+        Mono<Book> call = hedgedBookrecClient.isEnabled()
+            ? time(timings, SERVICE_STAGE, hedgedBookrecClient.recommend())
+            : call(timings, webClient.get().uri("http://bookrecservice/bookrec")
+                .attribute(ServerTimings.ATTRIBUTE, timings).retrieve().toEntity(Book.class));
+        return time(timings, CIRCUIT_BREAKER_STAGE, reactiveCircuitBreaker.run(
+            call.transformDeferred(BulkheadOperator.of(reactiveBookrecBulkhead))
+                .doOnNext(recentRecommendationsCache::record),
+            throwable -> Mono.fromSupplier(this::getFallbackBook)))
+            .contextWrite(requestDeadlinePropagation.newDeadlineContext());
+    }
+
+    @RequestMapping(path = "/bookrecedge/reactive", params = "count")
+    public Mono<List<Book>> getBookRecommendationsReactive(@RequestParam int count) {
+        if (count < 1 || count > maxCount) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "count must be between 1 and " + maxCount);
+        }
+        ServerTimings timings = ServerTimings.current();
+        return time(timings, CIRCUIT_BREAKER_STAGE, reactiveCircuitBreaker.run(
+            call(timings, webClient.get().uri("http://bookrecservice/bookrec?count={count}", count)
+                    .attribute(ServerTimings.ATTRIBUTE, timings).retrieve().toEntity(Book[].class))
+                .map(Arrays::asList)
+                .transformDeferred(BulkheadOperator.of(reactiveBookrecBulkhead))
+                .doOnNext(recentRecommendationsCache::recordAll),
+            throwable -> Mono.fromSupplier(() -> getFallbackBooks(count))))
+            .contextWrite(requestDeadlinePropagation.newDeadlineContext());
+    }
+
+    // blocking calls run on a bulkhead thread, where the load balancer finds the timings bound to it,
+    // and the RestTemplate the deadline of the request
+    private <T> T call(ServerTimings timings, long deadline, Supplier<ResponseEntity<T>> call) {
+        return timings.bind(() -> requestDeadlinePropagation.bind(deadline, () -> {
+            long start = System.nanoTime();
+            ResponseEntity<T> response = call.get();
+            timings.recordCall(SERVICE_STAGE, System.nanoTime() - start,
+                response.getHeaders().getFirst(ServerTimings.HEADER));
+            return response.getBody();
+        }));
+    }
+
+    private static <T> Mono<T> call(ServerTimings timings, Mono<ResponseEntity<T>> call) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call.map(response -> {
+                timings.recordCall(SERVICE_STAGE, System.nanoTime() - start,
+                    response.getHeaders().getFirst(ServerTimings.HEADER));
+                return response.getBody();
+            });
+        });
+    }
+
+    // recorded on success, which comes before the response is written
+    private static <T> Mono<T> time(ServerTimings timings, String stage, Mono<T> mono) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return mono.doOnSuccess(value -> timings.record(stage, System.nanoTime() - start));
+        });
+    }
+
+    private Book record(Book book) {
+        recentRecommendationsCache.record(book);
+        return book;
+    }
+
+    private List<Book> recordAll(List<Book> books) {
+        recentRecommendationsCache.recordAll(books);
+        return books;
+    }
+
+    // stale while revalidate: serve a recent book now, and ask for fresh ones in the background
+    public Book getFallbackBook() {
+        revalidate();
+        return recentRecommendationsCache.random().orElse(defaultBook);
+    }
+
+    public List<Book> getFallbackBooks(int count) {
+        revalidate();
+        List<Book> books = recentRecommendationsCache.random(count);
+        return books.isEmpty() ? List.of(defaultBook) : books;
+    }
+
+    // with the circuit open the refill would be rejected at once, so recent books are served as they are
+    private void revalidate() {
+        State state = bookrecCircuitBreaker.getState();
+        if (state != State.OPEN && state != State.FORCED_OPEN) {
+            recommendationPrefetcher.refill();
+        }
     }
 
     public Book getDefaultBook() {
-        return new Book(defaultBookId, defaultBookTitle, defaultBookAuthor);
+        return defaultBook;
     }
 }
@@ -0,0 +1,108 @@
+package deors.demos.microservices.bookrecedgeservice;
+
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Serialized JSON of the books relayed by the edge, keyed by id. Books arrive as new
+ * instances on every call, so an entry is reused only while the id, title and author
+ * it was written from are unchanged, which is much cheaper to check than to serialize.
+ * Lookups take no lock, as this is on the hot path of every response. Once full, the
+ * least recently used tenth of the entries is evicted in one go, by one thread, which
+ * keeps eviction cheap per book at the price of an approximate order.
+ */
+@Component
+public class BookJsonCache {
+
+    private final ObjectMapper objectMapper;
+
+    private final int maxEntries;
+
+    private final Map<Long, CachedJson> entries = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    public BookJsonCache(ObjectMapper objectMapper, @Value("${bookrecedge.jsonCache.maxEntries:10000}") int maxEntries) {
+        this.objectMapper = objectMapper;
+        this.maxEntries = maxEntries;
+    }
+
+    public byte[] get(Book book) {
+        if (book.getId() == null) {
+            return serialize(book);
+        }
+        CachedJson cached = entries.get(book.getId());
+        if (cached != null && cached.matches(book)) {
+            cached.lastUsed = System.nanoTime();
+            return cached.json;
+        }
+        byte[] json = serialize(book);
+        entries.put(book.getId(), new CachedJson(book, json));
+        if (entries.size() > maxEntries) {
+            evict();
+        }
+        return json;
+    }
+
+    // entries used at the same time as the cut-off may be kept, so a little more than a tenth may remain
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long[] lastUsed = entries.values().stream().mapToLong(entry -> entry.lastUsed).toArray();
+            int excess = lastUsed.length - maxEntries + maxEntries / 10;
+            if (excess <= 0) {
+                return;
+            }
+            Arrays.sort(lastUsed);
+            long cutOff = lastUsed[Math.min(excess, lastUsed.length) - 1];
+            entries.values().removeIf(entry -> entry.lastUsed <= cutOff);
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private byte[] serialize(Book book) {
+        try {
+            return objectMapper.writeValueAsBytes(book);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class CachedJson {
+
+        private final String title;
+
+        private final String author;
+
+        private final byte[] json;
+
+        private volatile long lastUsed = System.nanoTime();
+
+        CachedJson(Book book, byte[] json) {
+            this.title = book.getTitle();
+            this.author = book.getAuthor();
+            this.json = json;
+        }
+
+        boolean matches(Book book) {
+            return Objects.equals(title, book.getTitle()) && Objects.equals(author, book.getAuthor());
+        }
+    }
+}
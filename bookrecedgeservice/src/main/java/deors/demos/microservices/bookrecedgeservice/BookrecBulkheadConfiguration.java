@@ -0,0 +1,49 @@
+package deors.demos.microservices.bookrecedgeservice;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.circuitbreaker.resilience4j.Resilience4jBulkheadProvider;
+import org.springframework.cloud.client.circuitbreaker.Customizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkheadConfig;
+
+@Configuration
+public class BookrecBulkheadConfiguration {
+
+    @Value("${bookrecedge.bulkhead.maxConcurrentCalls:50}")
+    private int maxConcurrentCalls;
+
+    @Value("${bookrecedge.bulkhead.queueCapacity:1}")
+    private int queueCapacity;
+
+    // blocking calls get their own thread pool instead of the common fork join pool,
+    // and calls that do not fit in it are rejected at once into the fallback
+    @Bean
+    Customizer<Resilience4jBulkheadProvider> bookrecBulkheadCustomizer() {
+        return provider -> provider.configure(builder -> builder
+            .bulkheadConfig(BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(Duration.ZERO)
+                .build())
+            .threadPoolBulkheadConfig(ThreadPoolBulkheadConfig.custom()
+                .coreThreadPoolSize(maxConcurrentCalls)
+                .maxThreadPoolSize(maxConcurrentCalls)
+                .queueCapacity(queueCapacity)
+                .build()), "bookrec");
+    }
+
+    // the reactive circuit breaker does not apply bulkheads, so this one is used by the controller
+    @Bean
+    Bulkhead reactiveBookrecBulkhead(BulkheadRegistry bulkheadRegistry) {
+        return bulkheadRegistry.bulkhead("bookrec-reactive", BulkheadConfig.custom()
+            .maxConcurrentCalls(maxConcurrentCalls)
+            .maxWaitDuration(Duration.ZERO)
+            .build());
+    }
+}
@@ -0,0 +1,121 @@
+package deors.demos.microservices.bookrecedgeservice;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.PoolingHttpClientConnectionManagerMetricsBinder;
+import io.netty.channel.ChannelOption;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * HTTP clients used for calls to bookrecservice: a pooled Apache HttpClient behind the
+ * RestTemplate, and a Reactor Netty connection pool behind the WebClients, both keeping
+ * connections alive between calls, evicting them once idle, and bounded by timeouts.
+ */
+@Configuration
+public class BookrecHttpClientConfiguration {
+
+    private static final String POOL_NAME = "bookrecservice";
+
+    @Value("${bookrecedge.http.pooled:true}")
+    private boolean pooled;
+
+    @Value("${bookrecedge.http.maxConnections:200}")
+    private int maxConnections;
+
+    @Value("${bookrecedge.http.maxConnectionsPerRoute:50}")
+    private int maxConnectionsPerRoute;
+
+    @Value("${bookrecedge.http.connectTimeoutMillis:1000}")
+    private int connectTimeoutMillis;
+
+    @Value("${bookrecedge.http.readTimeoutMillis:2000}")
+    private int readTimeoutMillis;
+
+    @Value("${bookrecedge.http.acquireTimeoutMillis:500}")
+    private int acquireTimeoutMillis;
+
+    @Value("${bookrecedge.http.maxIdleMillis:30000}")
+    private long maxIdleMillis;
+
+    @Value("${bookrecedge.http.protocol:http1}")
+    private String protocol;
+
+    @Bean(destroyMethod = "close")
+    PoolingHttpClientConnectionManager bookrecConnectionManager(MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        // a connection closed by the server while idle is detected before it is reused
+        connectionManager.setValidateAfterInactivity(1000);
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, POOL_NAME).bindTo(meterRegistry);
+        return connectionManager;
+    }
+
+    @Bean(destroyMethod = "close")
+    CloseableHttpClient bookrecHttpClient(PoolingHttpClientConnectionManager bookrecConnectionManager) {
+        return HttpClients.custom()
+            .setConnectionManager(bookrecConnectionManager)
+            .setDefaultRequestConfig(RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMillis)
+                .setSocketTimeout(readTimeoutMillis)
+                .setConnectionRequestTimeout(acquireTimeoutMillis)
+                .build())
+            .evictExpiredConnections()
+            .evictIdleConnections(maxIdleMillis, TimeUnit.MILLISECONDS)
+            .build();
+    }
+
+    // the unpooled JDK client is kept as a baseline to compare with
+    @Bean
+    ClientHttpRequestFactory bookrecRequestFactory(CloseableHttpClient bookrecHttpClient) {
+        if (!pooled) {
+            SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+            requestFactory.setConnectTimeout(connectTimeoutMillis);
+            requestFactory.setReadTimeout(readTimeoutMillis);
+            return requestFactory;
+        }
+        return new HttpComponentsClientHttpRequestFactory(bookrecHttpClient);
+    }
+
+    @Bean(destroyMethod = "dispose")
+    ConnectionProvider bookrecConnectionProvider() {
+        if (!pooled) {
+            return ConnectionProvider.newConnection();
+        }
+        return ConnectionProvider.builder(POOL_NAME)
+            .maxConnections(maxConnections)
+            .pendingAcquireTimeout(Duration.ofMillis(acquireTimeoutMillis))
+            .maxIdleTime(Duration.ofMillis(maxIdleMillis))
+            .evictInBackground(Duration.ofMillis(maxIdleMillis / 2))
+            // pool gauges are published to the global registry, which Spring Boot adds to its own
+            .metrics(true)
+            .build();
+    }
+
+    // h2c needs bookrecservice to be started with server.http2.enabled=true
+    @Bean
+    ClientHttpConnector bookrecClientConnector(ConnectionProvider bookrecConnectionProvider) {
+        HttpClient httpClient = HttpClient.create(bookrecConnectionProvider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMillis)
+            .responseTimeout(Duration.ofMillis(readTimeoutMillis))
+            .protocol("h2c".equals(protocol) ? HttpProtocol.H2C : HttpProtocol.HTTP11);
+        return new ReactorClientHttpConnector(httpClient);
+    }
+}
@@ -0,0 +1,51 @@
+package deors.demos.microservices.bookrecedgeservice;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+
+/**
+ * Encoding asked for in calls to bookrecservice: JSON, or CBOR, which is smaller and cheaper
+ * to parse. External clients of the edge service are not affected, and keep getting JSON.
+ */
+@Component
+public class BookrecWireFormat {
+
+    private final MediaType mediaType;
+
+    public BookrecWireFormat(@Value("${bookrecedge.wireFormat:json}") String wireFormat) {
+        if ("json".equals(wireFormat)) {
+            mediaType = MediaType.APPLICATION_JSON;
+        } else if ("cbor".equals(wireFormat)) {
+            mediaType = MediaType.APPLICATION_CBOR;
+        } else {
+            throw new IllegalArgumentException("unknown wire format: " + wireFormat + ", expected json or cbor");
+        }
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    // the accept header is replaced, as otherwise it would list every type the converters can read
+    public RestTemplate apply(RestTemplate restTemplate) {
+        restTemplate.getInterceptors().add((request, body, execution) -> {
+            request.getHeaders().setAccept(List.of(mediaType));
+            return execution.execute(request, body);
+        });
+        return restTemplate;
+    }
+
+    // the CBOR decoder is not registered by default, and only decodes whole values, not streams
+    public WebClient.Builder apply(WebClient.Builder webClientBuilder) {
+        return webClientBuilder
+            .defaultHeader(HttpHeaders.ACCEPT, mediaType.toString())
+            .codecs(codecs -> codecs.customCodecs().register(new Jackson2CborDecoder()));
+    }
+}
@@ -3,10 +3,15 @@ package deors.demos.microservices.bookrecedgeservice;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ClientHttpConnector;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
 
-@SpringBootApplication
+@SpringBootApplication(scanBasePackages = { "deors.demos.microservices.bookrecedgeservice", "deors.demos.microservices.common" })
 @org.springframework.cloud.client.discovery.EnableDiscoveryClient
+@org.springframework.cloud.loadbalancer.annotation.LoadBalancerClient(
+    name = "bookrecservice", configuration = LatencyAwareLoadBalancerConfiguration.class)
 public class BookrecedgeserviceApplication {
 
     public static void main(String[] args) {
@@ -15,7 +20,16 @@ public class BookrecedgeserviceApplication {
 
     @Bean
     @org.springframework.cloud.client.loadbalancer.LoadBalanced
-    RestTemplate restTemplate() {
-        return new RestTemplate();
+    RestTemplate restTemplate(ClientHttpRequestFactory bookrecRequestFactory, BookrecWireFormat bookrecWireFormat,
+            RequestDeadlinePropagation requestDeadlinePropagation) {
+        return requestDeadlinePropagation.apply(bookrecWireFormat.apply(new RestTemplate(bookrecRequestFactory)));
+    }
+
+    @Bean
+    @org.springframework.cloud.client.loadbalancer.LoadBalanced
+    WebClient.Builder webClientBuilder(ClientHttpConnector bookrecClientConnector, BookrecWireFormat bookrecWireFormat,
+            RequestDeadlinePropagation requestDeadlinePropagation) {
+        return requestDeadlinePropagation.apply(
+            bookrecWireFormat.apply(WebClient.builder().clientConnector(bookrecClientConnector)));
     }
 }
@@ -0,0 +1,43 @@
+package deors.demos.microservices.bookrecedgeservice;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkheadRegistry;
+
+@Component
+@Endpoint(id = "concurrencylimits")
+public class ConcurrencyLimitsEndpoint {
+
+    @Autowired
+    private InstanceConcurrencyLimits instanceConcurrencyLimits;
+
+    @Autowired
+    private BulkheadRegistry bulkheadRegistry;
+
+    @Autowired
+    private ThreadPoolBulkheadRegistry threadPoolBulkheadRegistry;
+
+    @ReadOperation
+    public Map<String, Object> concurrencyLimits() {
+        Map<String, Object> bulkheads = new LinkedHashMap<>();
+        threadPoolBulkheadRegistry.getAllBulkheads().forEach(bulkhead -> bulkheads.put(bulkhead.getName(), Map.of(
+            "maxConcurrentCalls", bulkhead.getBulkheadConfig().getMaxThreadPoolSize(),
+            "threads", bulkhead.getMetrics().getThreadPoolSize(),
+            "queueDepth", bulkhead.getMetrics().getQueueDepth())));
+        bulkheadRegistry.getAllBulkheads().forEach(bulkhead -> bulkheads.put(bulkhead.getName(), Map.of(
+            "maxConcurrentCalls", bulkhead.getBulkheadConfig().getMaxConcurrentCalls(),
+            "availableConcurrentCalls", bulkhead.getMetrics().getAvailableConcurrentCalls())));
+        Map<String, Object> concurrencyLimits = new LinkedHashMap<>();
+        concurrencyLimits.put("instances", instanceConcurrencyLimits.snapshot());
+        concurrencyLimits.put("shed", instanceConcurrencyLimits.getShed());
+        concurrencyLimits.put("bulkheads", bulkheads);
+        return concurrencyLimits;
+    }
+}
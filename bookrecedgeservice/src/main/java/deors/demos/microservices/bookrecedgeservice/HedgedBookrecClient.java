@@ -0,0 +1,228 @@
+package deors.demos.microservices.bookrecedgeservice;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.client.loadbalancer.reactive.ReactiveLoadBalancer;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import reactor.core.publisher.Mono;
+
+/**
+ * Hedged recommendation calls: when the instance chosen by the load balancer has not answered
+ * within the configured percentile of recent response times, the same request is sent to the
+ * least loaded other instance, and whichever answers first wins while the other is cancelled.
+ * That instance is chosen with the same zone affinity as the load balancer, so hedges stay in
+ * the local zone while it is healthy. Hedges are paid for from a budget that grows with every
+ * primary call, so they never exceed the configured share of extra load, even when the whole
+ * service slows down.
+ */
+@Component
+public class HedgedBookrecClient {
+
+    private static final String SERVICE_ID = "bookrecservice";
+
+    private static final long DELAY_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    // budget is kept in hundredths of a hedge, and can accumulate up to this many hedges
+    private static final long MAX_BURST = 10;
+
+    private final Supplier<ReactiveLoadBalancer<ServiceInstance>> loadBalancer;
+
+    private final Supplier<List<ServiceInstance>> instances;
+
+    private final InstanceLatencyTracker instanceLatencyTracker;
+
+    private final InstanceConcurrencyLimits instanceConcurrencyLimits;
+
+    private final ZoneAffinity zoneAffinity;
+
+    private final WebClient webClient;
+
+    private final boolean enabled;
+
+    private final long minDelayMillis;
+
+    private final long initialDelayMillis;
+
+    private final long budgetPercent;
+
+    private final AtomicLong budget = new AtomicLong();
+
+    private final Timer latency;
+
+    private final Counter sent;
+
+    private final Counter throttled;
+
+    private final Counter primaryWins;
+
+    private final Counter hedgeWins;
+
+    private volatile long delayMillis;
+
+    private volatile long delayRefreshedNanos;
+
+    @Autowired
+    public HedgedBookrecClient(LoadBalancerClientFactory loadBalancerClientFactory, DiscoveryClient discoveryClient,
+            InstanceLatencyTracker instanceLatencyTracker, InstanceConcurrencyLimits instanceConcurrencyLimits,
+            ZoneAffinity zoneAffinity, ClientHttpConnector bookrecClientConnector, BookrecWireFormat bookrecWireFormat,
+            RequestDeadlinePropagation requestDeadlinePropagation, MeterRegistry meterRegistry,
+            @Value("${bookrecedge.hedge.enabled:false}") boolean enabled,
+            @Value("${bookrecedge.hedge.percentile:0.95}") double percentile,
+            @Value("${bookrecedge.hedge.minDelayMillis:5}") long minDelayMillis,
+            @Value("${bookrecedge.hedge.initialDelayMillis:100}") long initialDelayMillis,
+            @Value("${bookrecedge.hedge.budgetPercent:10}") long budgetPercent) {
+        // the load balancer child context is only created on first use
+        this(() -> loadBalancerClientFactory.getInstance(SERVICE_ID), () -> discoveryClient.getInstances(SERVICE_ID),
+            instanceLatencyTracker, instanceConcurrencyLimits, zoneAffinity,
+            requestDeadlinePropagation.apply(
+                bookrecWireFormat.apply(WebClient.builder().clientConnector(bookrecClientConnector))).build(),
+            meterRegistry, enabled, percentile, minDelayMillis, initialDelayMillis, budgetPercent);
+    }
+
+    HedgedBookrecClient(Supplier<ReactiveLoadBalancer<ServiceInstance>> loadBalancer,
+            Supplier<List<ServiceInstance>> instances, InstanceLatencyTracker instanceLatencyTracker,
+            InstanceConcurrencyLimits instanceConcurrencyLimits, ZoneAffinity zoneAffinity, WebClient webClient,
+            MeterRegistry meterRegistry, boolean enabled, double percentile,
+            long minDelayMillis, long initialDelayMillis, long budgetPercent) {
+        this.loadBalancer = loadBalancer;
+        this.instances = instances;
+        this.instanceLatencyTracker = instanceLatencyTracker;
+        this.instanceConcurrencyLimits = instanceConcurrencyLimits;
+        this.zoneAffinity = zoneAffinity;
+        this.webClient = webClient;
+        this.enabled = enabled;
+        this.minDelayMillis = minDelayMillis;
+        this.initialDelayMillis = initialDelayMillis;
+        this.budgetPercent = budgetPercent;
+        this.delayMillis = initialDelayMillis;
+        this.latency = Timer.builder("bookrecedge.hedge.latency")
+            .description("Response times of bookrecservice calls, from which the hedge delay is taken")
+            .publishPercentiles(percentile)
+            .distributionStatisticExpiry(Duration.ofMinutes(1))
+            .register(meterRegistry);
+        this.sent = Counter.builder("bookrecedge.hedge.requests").tag("result", "sent")
+            .description("Hedged requests, by whether they were sent or throttled by the budget")
+            .register(meterRegistry);
+        this.throttled = Counter.builder("bookrecedge.hedge.requests").tag("result", "throttled")
+            .description("Hedged requests, by whether they were sent or throttled by the budget")
+            .register(meterRegistry);
+        this.primaryWins = Counter.builder("bookrecedge.hedge.wins").tag("winner", "primary")
+            .description("Hedged calls, by the request that answered first")
+            .register(meterRegistry);
+        this.hedgeWins = Counter.builder("bookrecedge.hedge.wins").tag("winner", "hedge")
+            .description("Hedged calls, by the request that answered first")
+            .register(meterRegistry);
+        Gauge.builder("bookrecedge.hedge.delay", this, HedgedBookrecClient::getDelayMillis)
+            .baseUnit("milliseconds")
+            .description("Time waited for the first response before sending a hedged request")
+            .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getDelayMillis() {
+        return delayMillis;
+    }
+
+    public Mono<Book> recommend() {
+        return Mono.from(loadBalancer.get().choose(new DefaultRequest<>())).flatMap(response -> {
+            if (!response.hasServer()) {
+                return Mono.error(new IllegalStateException("no instances available for " + SERVICE_ID));
+            }
+            ServiceInstance primary = response.getServer();
+            budget.updateAndGet(available -> Math.min(MAX_BURST * 100, available + budgetPercent));
+            Mono<Book> hedge = Mono.delay(Duration.ofMillis(currentDelayMillis()))
+                .flatMap(tick -> hedge(primary));
+            return Mono.firstWithValue(
+                call(primary).doOnNext(book -> primaryWins.increment()),
+                hedge.doOnNext(book -> hedgeWins.increment()));
+        });
+    }
+
+    private Mono<Book> hedge(ServiceInstance primary) {
+        long now = System.nanoTime();
+        String primaryKey = InstanceLatencyTracker.keyOf(primary);
+        List<ServiceInstance> available = new ArrayList<>();
+        for (ServiceInstance instance : instances.get()) {
+            if (!InstanceLatencyTracker.keyOf(instance).equals(primaryKey) && instanceConcurrencyLimits.hasCapacity(instance)) {
+                available.add(instance);
+            }
+        }
+        ServiceInstance alternative = null;
+        for (ServiceInstance instance : zoneAffinity.candidates(available, now)) {
+            if (alternative == null
+                    || instanceLatencyTracker.cost(instance, now) < instanceLatencyTracker.cost(alternative, now)) {
+                alternative = instance;
+            }
+        }
+        if (alternative == null) {
+            return Mono.empty();
+        }
+        if (!tryAcquireBudget()) {
+            throttled.increment();
+            return Mono.empty();
+        }
+        sent.increment();
+        zoneAffinity.chosen(alternative);
+        return call(alternative);
+    }
+
+    private boolean tryAcquireBudget() {
+        while (true) {
+            long available = budget.get();
+            if (available < 100) {
+                return false;
+            }
+            if (budget.compareAndSet(available, available - 100)) {
+                return true;
+            }
+        }
+    }
+
+    private Mono<Book> call(ServiceInstance instance) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            instanceLatencyTracker.requestStarted(instance);
+            return webClient.get().uri(instance.getUri() + "/bookrec").retrieve().bodyToMono(Book.class)
+                .doOnSuccess(book -> {
+                    long elapsed = System.nanoTime() - start;
+                    latency.record(elapsed, TimeUnit.NANOSECONDS);
+                    instanceLatencyTracker.requestCompleted(instance, elapsed, false);
+                })
+                .doOnError(throwable -> instanceLatencyTracker.requestCompleted(instance, System.nanoTime() - start, true))
+                .doOnCancel(() -> instanceLatencyTracker.requestCancelled(instance, System.nanoTime() - start));
+        });
+    }
+
+    private long currentDelayMillis() {
+        long now = System.nanoTime();
+        if (now - delayRefreshedNanos > DELAY_REFRESH_NANOS) {
+            delayRefreshedNanos = now;
+            ValueAtPercentile[] percentiles = latency.takeSnapshot().percentileValues();
+            double observed = percentiles.length > 0 ? percentiles[0].value(TimeUnit.MILLISECONDS) : 0;
+            delayMillis = observed > 0 ? Math.max(minDelayMillis, (long) observed) : initialDelayMillis;
+        }
+        return delayMillis;
+    }
+}
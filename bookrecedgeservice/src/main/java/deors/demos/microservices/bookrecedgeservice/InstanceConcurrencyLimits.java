@@ -0,0 +1,178 @@
+package deors.demos.microservices.bookrecedgeservice;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+/**
+ * Adaptive limit of requests in flight for every bookrecservice instance, following AIMD:
+ * the limit grows by one for every limit's worth of fast responses while the instance is
+ * well used, and is cut by the backoff ratio on every failure or response slower than the
+ * threshold. Instances at their limit are skipped by the load balancer, and when all of
+ * them are, the request is shed at once and the caller falls back.
+ */
+@Component
+public class InstanceConcurrencyLimits {
+
+    private final MeterRegistry meterRegistry;
+
+    private final boolean enabled;
+
+    private final int initialLimit;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final long latencyThresholdNanos;
+
+    private final double backoffRatio;
+
+    private final Map<String, Limit> limits = new ConcurrentHashMap<>();
+
+    private final Counter shed;
+
+    @Autowired
+    public InstanceConcurrencyLimits(MeterRegistry meterRegistry,
+            @Value("${bookrecedge.concurrency.enabled:true}") boolean enabled,
+            @Value("${bookrecedge.concurrency.initialLimit:20}") int initialLimit,
+            @Value("${bookrecedge.concurrency.minLimit:1}") int minLimit,
+            @Value("${bookrecedge.concurrency.maxLimit:200}") int maxLimit,
+            @Value("${bookrecedge.concurrency.latencyThresholdMillis:500}") long latencyThresholdMillis,
+            @Value("${bookrecedge.concurrency.backoffRatio:0.9}") double backoffRatio) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+        this.backoffRatio = backoffRatio;
+        this.shed = Counter.builder("bookrecedge.concurrency.shed")
+            .description("Requests to bookrecservice shed because every instance was at its concurrency limit")
+            .register(meterRegistry);
+    }
+
+    private Limit limitOf(ServiceInstance instance) {
+        return limits.computeIfAbsent(InstanceLatencyTracker.keyOf(instance), this::register);
+    }
+
+    private Limit register(String key) {
+        Limit limit = new Limit(initialLimit);
+        Tags tags = Tags.of("instance", key);
+        Gauge.builder("bookrecedge.concurrency.limit", limit, Limit::getLimit)
+            .tags(tags)
+            .description("Current concurrency limit of bookrecservice, by instance")
+            .register(meterRegistry);
+        Gauge.builder("bookrecedge.concurrency.inflight", limit, Limit::getInFlight)
+            .tags(tags)
+            .description("Requests in flight counted against the concurrency limit of bookrecservice, by instance")
+            .register(meterRegistry);
+        limit.rejections = Counter.builder("bookrecedge.concurrency.rejected")
+            .tags(tags)
+            .description("Times an instance of bookrecservice was skipped for being at its concurrency limit")
+            .register(meterRegistry);
+        return limit;
+    }
+
+    public boolean hasCapacity(ServiceInstance instance) {
+        return !enabled || limitOf(instance).hasCapacity();
+    }
+
+    public List<ServiceInstance> available(List<ServiceInstance> instances) {
+        if (!enabled) {
+            return instances;
+        }
+        List<ServiceInstance> available = new ArrayList<>(instances.size());
+        for (ServiceInstance instance : instances) {
+            Limit limit = limitOf(instance);
+            if (limit.hasCapacity()) {
+                available.add(instance);
+            } else {
+                limit.rejections.increment();
+            }
+        }
+        if (available.isEmpty() && !instances.isEmpty()) {
+            shed.increment();
+        }
+        return available;
+    }
+
+    public void started(ServiceInstance instance) {
+        limitOf(instance).inFlight.incrementAndGet();
+    }
+
+    // a negative elapsed time means that it is unknown, in which case only a failure counts as a drop
+    public void completed(ServiceInstance instance, long elapsedNanos, boolean failed) {
+        Limit limit = limitOf(instance);
+        limit.onSample(failed || elapsedNanos > latencyThresholdNanos);
+        limit.inFlight.decrementAndGet();
+    }
+
+    public void cancelled(ServiceInstance instance) {
+        limitOf(instance).inFlight.decrementAndGet();
+    }
+
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> snapshot = new LinkedHashMap<>();
+        limits.forEach((key, limit) -> {
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("limit", limit.getLimit());
+            values.put("inFlight", limit.getInFlight());
+            values.put("rejected", (long) limit.rejections.count());
+            snapshot.put(key, values);
+        });
+        return snapshot;
+    }
+
+    public long getShed() {
+        return (long) shed.count();
+    }
+
+    private class Limit {
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private double limit;
+
+        private Counter rejections;
+
+        Limit(double limit) {
+            this.limit = limit;
+        }
+
+        synchronized int getLimit() {
+            return (int) limit;
+        }
+
+        int getInFlight() {
+            return inFlight.get();
+        }
+
+        boolean hasCapacity() {
+            return inFlight.get() < getLimit();
+        }
+
+        synchronized void onSample(boolean dropped) {
+            if (dropped) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else if (inFlight.get() * 2 >= limit) {
+                // only grow while the limit is actually being tested
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+        }
+    }
+}
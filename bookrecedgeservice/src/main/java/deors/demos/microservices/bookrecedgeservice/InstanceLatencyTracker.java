@@ -0,0 +1,208 @@
+package deors.demos.microservices.bookrecedgeservice;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.CompletionContext;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerLifecycle;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.client.loadbalancer.TimedRequestContext;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+/**
+ * Tracks, for every bookrecservice instance, the requests in flight and a peak-sensitive
+ * moving average of the response time, fed by the load balancer lifecycle callbacks of both
+ * the RestTemplate and the WebClient. The average follows any slower response immediately,
+ * and otherwise decays exponentially with time, so that idle instances are tried again.
+ */
+@Component
+public class InstanceLatencyTracker implements LoadBalancerLifecycle<Object, Object, ServiceInstance> {
+
+    private final MeterRegistry meterRegistry;
+
+    private final InstanceConcurrencyLimits instanceConcurrencyLimits;
+
+    private final long decayNanos;
+
+    private final long failurePenaltyNanos;
+
+    private final Map<String, InstanceStats> stats = new ConcurrentHashMap<>();
+
+    public InstanceLatencyTracker(MeterRegistry meterRegistry, InstanceConcurrencyLimits instanceConcurrencyLimits,
+            @Value("${bookrecedge.loadbalancer.decayMillis:2000}") long decayMillis,
+            @Value("${bookrecedge.loadbalancer.failurePenaltyMillis:1000}") long failurePenaltyMillis) {
+        this.meterRegistry = meterRegistry;
+        this.instanceConcurrencyLimits = instanceConcurrencyLimits;
+        this.decayNanos = TimeUnit.MILLISECONDS.toNanos(decayMillis);
+        this.failurePenaltyNanos = TimeUnit.MILLISECONDS.toNanos(failurePenaltyMillis);
+    }
+
+    public static String keyOf(ServiceInstance instance) {
+        return instance.getHost() + ":" + instance.getPort();
+    }
+
+    public InstanceStats statsOf(ServiceInstance instance) {
+        return stats.computeIfAbsent(keyOf(instance), this::register);
+    }
+
+    public double cost(ServiceInstance instance, long nowNanos) {
+        return statsOf(instance).cost(nowNanos);
+    }
+
+    private InstanceStats register(String key) {
+        InstanceStats instanceStats = new InstanceStats(decayNanos);
+        Tags tags = Tags.of("instance", key);
+        Gauge.builder("bookrecedge.loadbalancer.latency", instanceStats,
+                s -> s.latencyNanos(System.nanoTime()) / 1_000_000d)
+            .tags(tags).baseUnit("milliseconds")
+            .description("Decaying peak moving average of bookrecservice response times, by instance")
+            .register(meterRegistry);
+        Gauge.builder("bookrecedge.loadbalancer.outstanding", instanceStats, InstanceStats::getOutstanding)
+            .tags(tags)
+            .description("Requests in flight to bookrecservice, by instance")
+            .register(meterRegistry);
+        instanceStats.successes = Counter.builder("bookrecedge.loadbalancer.requests")
+            .tags(tags).tag("outcome", "success")
+            .description("Requests sent to bookrecservice, by instance and outcome")
+            .register(meterRegistry);
+        instanceStats.failures = Counter.builder("bookrecedge.loadbalancer.requests")
+            .tags(tags).tag("outcome", "failure")
+            .description("Requests sent to bookrecservice, by instance and outcome")
+            .register(meterRegistry);
+        instanceStats.cancellations = Counter.builder("bookrecedge.loadbalancer.requests")
+            .tags(tags).tag("outcome", "cancelled")
+            .description("Requests sent to bookrecservice, by instance and outcome")
+            .register(meterRegistry);
+        return instanceStats;
+    }
+
+    @Override
+    public void onStart(Request<Object> request) {
+        // nothing to track until an instance has been chosen
+    }
+
+    @Override
+    public void onStartRequest(Request<Object> request, Response<ServiceInstance> lbResponse) {
+        if (!lbResponse.hasServer()) {
+            return;
+        }
+        if (request.getContext() instanceof TimedRequestContext) {
+            TimedRequestContext context = (TimedRequestContext) request.getContext();
+            if (context.getRequestStartTime() == 0) {
+                context.setRequestStartTime(System.nanoTime());
+            }
+        }
+        requestStarted(lbResponse.getServer());
+    }
+
+    @Override
+    public void onComplete(CompletionContext<Object, ServiceInstance, Object> completionContext) {
+        Response<ServiceInstance> lbResponse = completionContext.getLoadBalancerResponse();
+        if (lbResponse == null || !lbResponse.hasServer()
+                || completionContext.status() == CompletionContext.Status.DISCARD) {
+            return;
+        }
+        long elapsed = -1;
+        Object context = completionContext.getLoadBalancerRequest().getContext();
+        if (context instanceof TimedRequestContext && ((TimedRequestContext) context).getRequestStartTime() != 0) {
+            elapsed = System.nanoTime() - ((TimedRequestContext) context).getRequestStartTime();
+        }
+        requestCompleted(lbResponse.getServer(), elapsed,
+            completionContext.status() == CompletionContext.Status.FAILED);
+    }
+
+    public void requestStarted(ServiceInstance instance) {
+        statsOf(instance).outstanding.incrementAndGet();
+        instanceConcurrencyLimits.started(instance);
+    }
+
+    // a negative elapsed time means that it is unknown, in which case only the outcome is tracked
+    public void requestCompleted(ServiceInstance instance, long elapsedNanos, boolean failed) {
+        InstanceStats instanceStats = statsOf(instance);
+        instanceStats.outstanding.decrementAndGet();
+        instanceConcurrencyLimits.completed(instance, elapsedNanos, failed);
+        long now = System.nanoTime();
+        if (failed) {
+            // a failing instance may well answer fast, so it should not look attractive for doing so
+            instanceStats.failures.increment();
+            instanceStats.observe(Math.max(elapsedNanos, failurePenaltyNanos), now);
+        } else {
+            instanceStats.successes.increment();
+            if (elapsedNanos >= 0) {
+                instanceStats.observe(elapsedNanos, now);
+            }
+        }
+    }
+
+    // the instance took at least the elapsed time, which is still worth remembering if it is slower than usual
+    public void requestCancelled(ServiceInstance instance, long elapsedNanos) {
+        InstanceStats instanceStats = statsOf(instance);
+        instanceStats.outstanding.decrementAndGet();
+        instanceConcurrencyLimits.cancelled(instance);
+        instanceStats.cancellations.increment();
+        if (elapsedNanos > instanceStats.latencyNanos(System.nanoTime())) {
+            instanceStats.observe(elapsedNanos, System.nanoTime());
+        }
+    }
+
+    public static class InstanceStats {
+
+        // cost of an instance with requests in flight but no response yet, so that it is not flooded
+        private static final double PENDING_PENALTY = Long.MAX_VALUE / 2d;
+
+        private final long decayNanos;
+
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        private double latencyNanos;
+
+        private long lastObservedNanos;
+
+        private Counter successes;
+
+        private Counter failures;
+
+        private Counter cancellations;
+
+        InstanceStats(long decayNanos) {
+            this.decayNanos = decayNanos;
+        }
+
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+
+        public synchronized void observe(long elapsedNanos, long nowNanos) {
+            if (elapsedNanos > latencyNanos) {
+                latencyNanos = elapsedNanos;
+            } else {
+                double weight = Math.exp(-(nowNanos - lastObservedNanos) / (double) decayNanos);
+                latencyNanos = latencyNanos * weight + elapsedNanos * (1 - weight);
+            }
+            lastObservedNanos = nowNanos;
+        }
+
+        public synchronized double latencyNanos(long nowNanos) {
+            return latencyNanos * Math.exp(-(nowNanos - lastObservedNanos) / (double) decayNanos);
+        }
+
+        public double cost(long nowNanos) {
+            double latency = latencyNanos(nowNanos);
+            int inFlight = outstanding.get();
+            if (latency == 0 && inFlight > 0) {
+                return PENDING_PENALTY + inFlight;
+            }
+            return latency * (inFlight + 1);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package deors.demos.microservices.bookrecedgeservice;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.EmptyResponse;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestData;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+
+import deors.demos.microservices.common.ServerTimings;
+import reactor.core.publisher.Mono;
+
+/**
+ * Power of two choices: two instances are picked at random and the request goes to the one
+ * with the lower cost, being the cost the moving average of its response times multiplied by
+ * its requests in flight plus one. A slow instance quickly stops receiving traffic, without
+ * the herding that always picking the best instance would cause. Instances at their
+ * concurrency limit are not considered, and instances in other zones only when the local
+ * zone is unhealthy.
+ */
+public class LatencyAwareLoadBalancer implements ReactorServiceInstanceLoadBalancer {
+
+    private static final Logger logger = LoggerFactory.getLogger(LatencyAwareLoadBalancer.class);
+
+    private static final String LOAD_BALANCER_STAGE = "lb";
+
+    private final ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplierProvider;
+
+    private final String serviceId;
+
+    private final InstanceLatencyTracker instanceLatencyTracker;
+
+    private final InstanceConcurrencyLimits instanceConcurrencyLimits;
+
+    private final ZoneAffinity zoneAffinity;
+
+    public LatencyAwareLoadBalancer(ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplierProvider,
+            String serviceId, InstanceLatencyTracker instanceLatencyTracker,
+            InstanceConcurrencyLimits instanceConcurrencyLimits, ZoneAffinity zoneAffinity) {
+        this.serviceInstanceListSupplierProvider = serviceInstanceListSupplierProvider;
+        this.serviceId = serviceId;
+        this.instanceLatencyTracker = instanceLatencyTracker;
+        this.instanceConcurrencyLimits = instanceConcurrencyLimits;
+        this.zoneAffinity = zoneAffinity;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Mono<Response<ServiceInstance>> choose(Request request) {
+        ServiceInstanceListSupplier supplier =
+            serviceInstanceListSupplierProvider.getIfAvailable(NoopServiceInstanceListSupplier::new);
+        ServerTimings timings = timingsOf(request);
+        long start = System.nanoTime();
+        return supplier.get(request).next().map(this::choose)
+            .doOnNext(response -> timings.record(LOAD_BALANCER_STAGE, System.nanoTime() - start));
+    }
+
+    // WebClient calls carry the timings of their request as an attribute
+    private static ServerTimings timingsOf(Request<?> request) {
+        if (request.getContext() instanceof RequestDataContext) {
+            RequestData requestData = ((RequestDataContext) request.getContext()).getClientRequest();
+            Object timings = requestData == null ? null : requestData.getAttributes().get(ServerTimings.ATTRIBUTE);
+            if (timings instanceof ServerTimings) {
+                return (ServerTimings) timings;
+            }
+        }
+        return ServerTimings.current();
+    }
+
+    Response<ServiceInstance> choose(List<ServiceInstance> discovered) {
+        if (discovered.isEmpty()) {
+            logger.warn("no servers available for service: " + serviceId);
+            return new EmptyResponse();
+        }
+        // an empty response makes the caller fail fast into its fallback, instead of queueing
+        List<ServiceInstance> available = instanceConcurrencyLimits.available(discovered);
+        if (available.isEmpty()) {
+            return new EmptyResponse();
+        }
+        long now = System.nanoTime();
+        ServiceInstance chosen = choose(zoneAffinity.candidates(available, now), now);
+        zoneAffinity.chosen(chosen);
+        return new DefaultResponse(chosen);
+    }
+
+    private ServiceInstance choose(List<ServiceInstance> instances, long now) {
+        if (instances.size() == 1) {
+            return instances.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(instances.size());
+        int second = random.nextInt(instances.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        ServiceInstance a = instances.get(first);
+        ServiceInstance b = instances.get(second);
+        return instanceLatencyTracker.cost(a, now) <= instanceLatencyTracker.cost(b, now) ? a : b;
+    }
+}
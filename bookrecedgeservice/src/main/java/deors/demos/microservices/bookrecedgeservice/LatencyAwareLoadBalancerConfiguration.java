@@ -0,0 +1,28 @@
+package deors.demos.microservices.bookrecedgeservice;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.loadbalancer.core.ReactorLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.RoundRobinLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+// not annotated with @Configuration on purpose, as it is only meant for the load balancer client contexts
+public class LatencyAwareLoadBalancerConfiguration {
+
+    @Bean
+    ReactorLoadBalancer<ServiceInstance> reactorServiceInstanceLoadBalancer(Environment environment,
+            LoadBalancerClientFactory loadBalancerClientFactory, InstanceLatencyTracker instanceLatencyTracker,
+            InstanceConcurrencyLimits instanceConcurrencyLimits, ZoneAffinity zoneAffinity) {
+        String name = environment.getProperty(LoadBalancerClientFactory.PROPERTY_NAME);
+        ObjectProvider<ServiceInstanceListSupplier> supplier =
+            loadBalancerClientFactory.getLazyProvider(name, ServiceInstanceListSupplier.class);
+        if ("round-robin".equals(environment.getProperty("bookrecedge.loadbalancer.strategy", "latency"))) {
+            return new RoundRobinLoadBalancer(supplier, name);
+        }
+        return new LatencyAwareLoadBalancer(supplier, name, instanceLatencyTracker, instanceConcurrencyLimits,
+            zoneAffinity);
+    }
+}
@@ -0,0 +1,138 @@
+package deors.demos.microservices.bookrecedgeservice;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * The most recent real recommendations received from bookrecservice, kept in a fixed-size
+ * ring where every new book evicts the oldest one. While bookrecservice is failing or slow,
+ * fallbacks are picked at random from here, as long as they are not older than the maximum
+ * staleness, so users keep getting varied recommendations instead of the default book.
+ */
+@Component
+public class RecentRecommendationsCache {
+
+    private static final int MAX_PROBES = 4;
+
+    private final LongSupplier clock;
+
+    private final long maxStaleMillis;
+
+    private final AtomicReferenceArray<Recent> ring;
+
+    private final AtomicLong written = new AtomicLong();
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    private final Timer staleness;
+
+    @Autowired
+    public RecentRecommendationsCache(MeterRegistry meterRegistry,
+            @Value("${bookrecedge.recent.capacity:256}") int capacity,
+            @Value("${bookrecedge.recent.maxStaleMillis:600000}") long maxStaleMillis) {
+        this(System::currentTimeMillis, meterRegistry, capacity, maxStaleMillis);
+    }
+
+    RecentRecommendationsCache(LongSupplier clock, MeterRegistry meterRegistry, int capacity, long maxStaleMillis) {
+        this.clock = clock;
+        this.maxStaleMillis = maxStaleMillis;
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.hits = Counter.builder("bookrecedge.recent.fallbacks").tag("result", "hit")
+            .description("Fallback recommendations, by whether a recent book was available")
+            .register(meterRegistry);
+        this.misses = Counter.builder("bookrecedge.recent.fallbacks").tag("result", "miss")
+            .description("Fallback recommendations, by whether a recent book was available")
+            .register(meterRegistry);
+        this.staleness = Timer.builder("bookrecedge.recent.staleness")
+            .description("Age of the recent books served as fallback")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(meterRegistry);
+        Gauge.builder("bookrecedge.recent.size", this, RecentRecommendationsCache::size)
+            .description("Number of recent books available for fallbacks")
+            .register(meterRegistry);
+    }
+
+    public void record(Book book) {
+        long slot = written.getAndIncrement() % ring.length();
+        ring.set((int) slot, new Recent(book, clock.getAsLong()));
+    }
+
+    public void recordAll(List<Book> books) {
+        books.forEach(this::record);
+    }
+
+    public int size() {
+        return (int) Math.min(written.get(), ring.length());
+    }
+
+    public Optional<Book> random() {
+        Optional<Recent> recent = pick();
+        if (recent.isEmpty()) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        staleness.record(clock.getAsLong() - recent.get().receivedMillis, TimeUnit.MILLISECONDS);
+        return Optional.of(recent.get().book);
+    }
+
+    public List<Book> random(int count) {
+        // keyed by id, so that the same book is not repeated in one response
+        Map<Long, Book> books = new LinkedHashMap<>();
+        for (int i = 0; i < count * 2 && books.size() < count; i++) {
+            pick().ifPresent(recent -> books.putIfAbsent(recent.book.getId(), recent.book));
+        }
+        if (books.isEmpty()) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return new ArrayList<>(books.values());
+    }
+
+    private Optional<Recent> pick() {
+        int size = size();
+        if (size == 0) {
+            return Optional.empty();
+        }
+        long oldest = clock.getAsLong() - maxStaleMillis;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            Recent recent = ring.get(ThreadLocalRandom.current().nextInt(size));
+            if (recent != null && recent.receivedMillis >= oldest) {
+                return Optional.of(recent);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static class Recent {
+
+        private final Book book;
+
+        private final long receivedMillis;
+
+        Recent(Book book, long receivedMillis) {
+            this.book = book;
+            this.receivedMillis = receivedMillis;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package deors.demos.microservices.bookrecedgeservice;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreakerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+/**
+ * Local buffer of real recommendations, fetched from bookrecservice in batches. Every
+ * recommendation is handed out once, and dropped if older than the configured maximum age.
+ * When the buffer runs low a single background refill is started, however many requests
+ * notice it, so downstream calls go down by roughly the batch size. After a failed refill,
+ * no other is started for a backoff period, doubled on every consecutive failure, so that an
+ * outage of bookrecservice does not turn into one downstream call per request.
+ */
+@Component
+public class RecommendationPrefetcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecommendationPrefetcher.class);
+
+    private final IntFunction<Mono<List<Book>>> fetcher;
+
+    private final LongSupplier clock;
+
+    private final RecentRecommendationsCache recentRecommendationsCache;
+
+    private final boolean enabled;
+
+    private final int batchSize;
+
+    private final int lowWatermark;
+
+    private final long maxAgeMillis;
+
+    private final long retryBackoffMillis;
+
+    private final long maxRetryBackoffMillis;
+
+    private final Queue<Prefetched> buffer = new ConcurrentLinkedQueue<>();
+
+    // ConcurrentLinkedQueue.size() walks the whole queue
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final AtomicBoolean refilling = new AtomicBoolean();
+
+    // both only written by the refill in progress, if any
+    private volatile long nextRefillMillis;
+
+    private volatile long backoffMillis;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    private final Counter expired;
+
+    private final Counter refills;
+
+    private final Counter failures;
+
+    @Autowired
+    public RecommendationPrefetcher(WebClient.Builder webClientBuilder,
+            ReactiveCircuitBreakerFactory reactiveCircuitBreakerFactory,
+            RecentRecommendationsCache recentRecommendationsCache, MeterRegistry meterRegistry,
+            @Value("${bookrecedge.prefetch.enabled:true}") boolean enabled,
+            @Value("${bookrecedge.prefetch.batchSize:50}") int batchSize,
+            @Value("${bookrecedge.prefetch.lowWatermark:10}") int lowWatermark,
+            @Value("${bookrecedge.prefetch.maxAgeMillis:30000}") long maxAgeMillis,
+            @Value("${bookrecedge.prefetch.retryBackoffMillis:1000}") long retryBackoffMillis,
+            @Value("${bookrecedge.prefetch.maxRetryBackoffMillis:30000}") long maxRetryBackoffMillis) {
+        this(fetcher(webClientBuilder.build(), reactiveCircuitBreakerFactory), System::currentTimeMillis,
+            recentRecommendationsCache, meterRegistry, enabled, batchSize, lowWatermark, maxAgeMillis,
+            retryBackoffMillis, maxRetryBackoffMillis);
+    }
+
+    RecommendationPrefetcher(IntFunction<Mono<List<Book>>> fetcher, LongSupplier clock,
+            RecentRecommendationsCache recentRecommendationsCache, MeterRegistry meterRegistry,
+            boolean enabled, int batchSize, int lowWatermark, long maxAgeMillis, long retryBackoffMillis,
+            long maxRetryBackoffMillis) {
+        this.fetcher = fetcher;
+        this.clock = clock;
+        this.recentRecommendationsCache = recentRecommendationsCache;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.lowWatermark = lowWatermark;
+        this.maxAgeMillis = maxAgeMillis;
+        this.retryBackoffMillis = retryBackoffMillis;
+        this.maxRetryBackoffMillis = maxRetryBackoffMillis;
+        this.hits = Counter.builder("bookrecedge.prefetch.requests").tag("result", "hit")
+            .description("Recommendations requested from the prefetch buffer, by result")
+            .register(meterRegistry);
+        this.misses = Counter.builder("bookrecedge.prefetch.requests").tag("result", "miss")
+            .description("Recommendations requested from the prefetch buffer, by result")
+            .register(meterRegistry);
+        this.expired = Counter.builder("bookrecedge.prefetch.expired")
+            .description("Prefetched recommendations dropped for being too old")
+            .register(meterRegistry);
+        this.refills = Counter.builder("bookrecedge.prefetch.refills")
+            .description("Batched calls made to bookrecservice to refill the prefetch buffer")
+            .register(meterRegistry);
+        this.failures = Counter.builder("bookrecedge.prefetch.failures")
+            .description("Refills of the prefetch buffer that failed, each followed by a backoff")
+            .register(meterRegistry);
+        Gauge.builder("bookrecedge.prefetch.size", size, AtomicInteger::get)
+            .description("Number of prefetched recommendations in the buffer")
+            .register(meterRegistry);
+    }
+
+    private static IntFunction<Mono<List<Book>>> fetcher(WebClient webClient,
+            ReactiveCircuitBreakerFactory reactiveCircuitBreakerFactory) {
+        // refills share the circuit breaker of direct calls, so an open circuit also pauses prefetching
+        return count -> reactiveCircuitBreakerFactory.create("bookrec").run(
+            webClient.get().uri("http://bookrecservice/bookrec?count={count}", count)
+                .retrieve().bodyToMono(Book[].class).map(Arrays::asList));
+    }
+
+    public Optional<Book> take() {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        long oldest = clock.getAsLong() - maxAgeMillis;
+        Optional<Book> book = Optional.empty();
+        for (Prefetched prefetched = buffer.poll(); prefetched != null; prefetched = buffer.poll()) {
+            size.decrementAndGet();
+            if (prefetched.fetchedMillis >= oldest) {
+                book = Optional.of(prefetched.book);
+                break;
+            }
+            expired.increment();
+        }
+        if (size.get() <= lowWatermark) {
+            refill();
+        }
+        (book.isPresent() ? hits : misses).increment();
+        return book;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    // also used, when prefetching is disabled, to revalidate the recent recommendations after a fallback
+    public void refill() {
+        if (clock.getAsLong() < nextRefillMillis || !refilling.compareAndSet(false, true)) {
+            return;
+        }
+        refills.increment();
+        fetcher.apply(batchSize)
+            .doFinally(signal -> refilling.set(false))
+            .subscribe(this::refilled, this::refillFailed);
+    }
+
+    private void refilled(List<Book> books) {
+        backoffMillis = 0;
+        nextRefillMillis = 0;
+        addAll(books);
+    }
+
+    private void refillFailed(Throwable throwable) {
+        failures.increment();
+        backoffMillis = backoffMillis == 0 ? retryBackoffMillis : Math.min(2 * backoffMillis, maxRetryBackoffMillis);
+        nextRefillMillis = clock.getAsLong() + backoffMillis;
+        logger.warn("prefetch of recommendations failed, next attempt in {} ms: {}", backoffMillis, throwable.toString());
+    }
+
+    private void addAll(List<Book> books) {
+        recentRecommendationsCache.recordAll(books);
+        if (!enabled) {
+            return;
+        }
+        long now = clock.getAsLong();
+        for (Book book : books) {
+            buffer.add(new Prefetched(book, now));
+            size.incrementAndGet();
+        }
+    }
+
+    private static class Prefetched {
+
+        private final Book book;
+
+        private final long fetchedMillis;
+
+        Prefetched(Book book, long fetchedMillis) {
+            this.book = book;
+            this.fetchedMillis = fetchedMillis;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package deors.demos.microservices.bookrecedgeservice;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+/**
+ * Tells bookrecservice until when the edge service will wait for each call, so that it can drop
+ * requests that were given up on while they were queued. The deadline is taken once per request
+ * to the edge, when the bookrec time limiter starts counting, and the same deadline is sent with
+ * every call made for it, including hedges and calls that waited in the bulkhead. The budget is
+ * the timeout of the bookrec time limiter. Calls made outside of a request, e.g. prefetches,
+ * get a deadline of their own when they are sent.
+ */
+@Component
+public class RequestDeadlinePropagation {
+
+    public static final String DEADLINE_HEADER = "X-Request-Deadline";
+
+    public static final String SENT_HEADER = "X-Request-Sent";
+
+    private static final String CONTEXT_KEY = RequestDeadlinePropagation.class.getName();
+
+    // blocking calls run on a bulkhead thread, where the deadline of the request is bound
+    private static final ThreadLocal<Long> BOUND = new ThreadLocal<>();
+
+    private final boolean enabled;
+
+    private final long budgetMillis;
+
+    @Autowired
+    public RequestDeadlinePropagation(
+            @Value("${bookrecedge.deadline.enabled:true}") boolean enabled,
+            TimeLimiterRegistry timeLimiterRegistry) {
+        this(enabled, timeLimiterRegistry.timeLimiter("bookrec").getTimeLimiterConfig().getTimeoutDuration().toMillis());
+    }
+
+    RequestDeadlinePropagation(boolean enabled, long budgetMillis) {
+        this.enabled = enabled;
+        this.budgetMillis = budgetMillis;
+    }
+
+    public long getBudgetMillis() {
+        return budgetMillis;
+    }
+
+    public long newDeadline() {
+        return System.currentTimeMillis() + budgetMillis;
+    }
+
+    public <T> T bind(long deadline, Supplier<T> action) {
+        Long previous = BOUND.get();
+        BOUND.set(deadline);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                BOUND.remove();
+            } else {
+                BOUND.set(previous);
+            }
+        }
+    }
+
+    // the deadline is taken on subscription, which is when the reactive time limiter starts
+    public Function<Context, Context> newDeadlineContext() {
+        return context -> context.put(CONTEXT_KEY, newDeadline());
+    }
+
+    public Function<Context, Context> deadlineContext(long deadline) {
+        return context -> context.put(CONTEXT_KEY, deadline);
+    }
+
+    void setHeaders(HttpHeaders headers, Long deadline) {
+        long now = System.currentTimeMillis();
+        headers.set(SENT_HEADER, Long.toString(now));
+        headers.set(DEADLINE_HEADER, Long.toString(deadline == null ? now + budgetMillis : deadline));
+    }
+
+    public RestTemplate apply(RestTemplate restTemplate) {
+        if (enabled) {
+            restTemplate.getInterceptors().add((request, body, execution) -> {
+                setHeaders(request.getHeaders(), BOUND.get());
+                return execution.execute(request, body);
+            });
+        }
+        return restTemplate;
+    }
+
+    public WebClient.Builder apply(WebClient.Builder webClientBuilder) {
+        if (!enabled) {
+            return webClientBuilder;
+        }
+        return webClientBuilder.filter((request, next) -> Mono.deferContextual(context -> next.exchange(
+            ClientRequest.from(request).headers(headers -> setHeaders(headers,
+                context.<Long>getOrEmpty(CONTEXT_KEY).orElse(null))).build())));
+    }
+}
@@ -0,0 +1,45 @@
+package deors.demos.microservices.bookrecedgeservice;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import deors.demos.microservices.common.CachedJsonHttpMessageConverter;
+import deors.demos.microservices.common.ServerTimingInterceptor;
+
+@Configuration
+public class WebMvcConfiguration implements WebMvcConfigurer {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private BookJsonCache bookJsonCache;
+
+    @Autowired
+    private ServerTimingInterceptor serverTimingInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(serverTimingInterceptor).addPathPatterns("/bookrecedge", "/bookrecedge/**");
+    }
+
+    // books, single or in lists, are written from the JSON cache instead of being serialized every time;
+    // added ahead of the Jackson converter configured by Spring Boot, which is kept for every other type
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        int jackson = 0;
+        while (jackson < converters.size() && !(converters.get(jackson) instanceof MappingJackson2HttpMessageConverter)) {
+            jackson++;
+        }
+        converters.add(jackson == converters.size() ? 0 : jackson,
+            new CachedJsonHttpMessageConverter<>(objectMapper, Book.class, bookJsonCache::get));
+    }
+}
@@ -0,0 +1,137 @@
+package deors.demos.microservices.bookrecedgeservice;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.loadbalancer.config.LoadBalancerZoneConfig;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Keeps bookrecservice traffic within the zone of the edge, taken from the zone metadata that
+ * instances publish when registering with Eureka. Same-zone instances are healthy while they
+ * have room under their concurrency limit and their response times are below a threshold.
+ * When the healthy share of the zone falls below the configured ratio, the zone is considered
+ * overloaded and requests are balanced across the available instances of every zone instead.
+ */
+@Component
+public class ZoneAffinity {
+
+    public static final String ZONE_METADATA = "zone";
+
+    private static final String UNKNOWN_ZONE = "unknown";
+
+    private final MeterRegistry meterRegistry;
+
+    private final LoadBalancerZoneConfig zoneConfig;
+
+    private final InstanceLatencyTracker instanceLatencyTracker;
+
+    private final boolean enabled;
+
+    private final double minHealthyRatio;
+
+    private final long maxLatencyNanos;
+
+    private final Map<String, Counter> requests = new ConcurrentHashMap<>();
+
+    private final Counter failovers;
+
+    @Autowired
+    public ZoneAffinity(MeterRegistry meterRegistry, LoadBalancerZoneConfig zoneConfig,
+            InstanceLatencyTracker instanceLatencyTracker,
+            @Value("${bookrecedge.zone.enabled:true}") boolean enabled,
+            @Value("${bookrecedge.zone.minHealthyRatio:0.5}") double minHealthyRatio,
+            @Value("${bookrecedge.zone.maxLatencyMillis:500}") long maxLatencyMillis) {
+        this.meterRegistry = meterRegistry;
+        this.zoneConfig = zoneConfig;
+        this.instanceLatencyTracker = instanceLatencyTracker;
+        this.enabled = enabled;
+        this.minHealthyRatio = minHealthyRatio;
+        this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxLatencyMillis);
+        this.failovers = Counter.builder("bookrecedge.zone.failovers")
+            .description("Requests to bookrecservice balanced across zones because the local zone was unhealthy")
+            .register(meterRegistry);
+    }
+
+    public static String zoneOf(ServiceInstance instance) {
+        String zone = instance.getMetadata() == null ? null : instance.getMetadata().get(ZONE_METADATA);
+        return zone == null || zone.isEmpty() ? UNKNOWN_ZONE : zone;
+    }
+
+    // read every time, as Eureka sets it from the instance metadata after the context has started
+    public String getLocalZone() {
+        String zone = zoneConfig.getZone();
+        return zone == null || zone.isEmpty() ? null : zone;
+    }
+
+    public boolean isEnabled() {
+        return enabled && getLocalZone() != null;
+    }
+
+    // the instances are expected to have room under their concurrency limit already
+    public List<ServiceInstance> candidates(List<ServiceInstance> instances, long nowNanos) {
+        String localZone = getLocalZone();
+        if (!enabled || localZone == null) {
+            return instances;
+        }
+        List<ServiceInstance> local = new ArrayList<>(instances.size());
+        for (ServiceInstance instance : instances) {
+            if (localZone.equals(zoneOf(instance))) {
+                local.add(instance);
+            }
+        }
+        int healthy = 0;
+        for (ServiceInstance instance : local) {
+            if (instanceLatencyTracker.statsOf(instance).latencyNanos(nowNanos) <= maxLatencyNanos) {
+                healthy++;
+            }
+        }
+        if (healthy == 0 || healthy < minHealthyRatio * local.size()) {
+            if (local.size() < instances.size()) {
+                failovers.increment();
+            }
+            return instances;
+        }
+        return local;
+    }
+
+    public void chosen(ServiceInstance instance) {
+        requests.computeIfAbsent(zoneOf(instance), this::register).increment();
+    }
+
+    private Counter register(String zone) {
+        String localZone = getLocalZone();
+        return Counter.builder("bookrecedge.zone.requests")
+            .tag("zone", zone)
+            .tag("local", Boolean.toString(localZone == null || zone.equals(localZone)))
+            .description("Requests sent to bookrecservice, by zone of the instance")
+            .register(meterRegistry);
+    }
+
+    public Map<String, Object> snapshot() {
+        double total = requests.values().stream().mapToDouble(Counter::count).sum();
+        Map<String, Object> zones = new LinkedHashMap<>();
+        requests.forEach((zone, counter) -> {
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("requests", (long) counter.count());
+            values.put("share", total == 0 ? 0d : counter.count() / total);
+            zones.put(zone, values);
+        });
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("localZone", getLocalZone());
+        snapshot.put("enabled", isEnabled());
+        snapshot.put("failovers", (long) failovers.count());
+        snapshot.put("zones", zones);
+        return snapshot;
+    }
+}
@@ -0,0 +1,21 @@
+package deors.demos.microservices.bookrecedgeservice;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+@Component
+@Endpoint(id = "zoneaffinity")
+public class ZoneAffinityEndpoint {
+
+    @Autowired
+    private ZoneAffinity zoneAffinity;
+
+    @ReadOperation
+    public Map<String, Object> zoneAffinity() {
+        return zoneAffinity.snapshot();
+    }
+}
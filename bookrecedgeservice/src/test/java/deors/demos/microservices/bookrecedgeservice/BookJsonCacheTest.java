@@ -0,0 +1,83 @@
+package deors.demos.microservices.bookrecedgeservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class BookJsonCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testReuseForEqualBook() throws Exception {
+
+        BookJsonCache cache = new BookJsonCache(objectMapper, 10);
+
+        byte[] json = cache.get(new Book(1L, "title", "author"));
+
+        assertEquals(objectMapper.writeValueAsString(new Book(1L, "title", "author")), new String(json, "UTF-8"),
+            "the cached JSON should match what Jackson writes for the book");
+        assertSame(json, cache.get(new Book(1L, "title", "author")),
+            "an equal book should be served from the cache");
+    }
+
+    @Test
+    public void testRefreshOnChangedBook() throws Exception {
+
+        BookJsonCache cache = new BookJsonCache(objectMapper, 10);
+
+        byte[] json = cache.get(new Book(1L, "title", "author"));
+        byte[] changed = cache.get(new Book(1L, "new title", "author"));
+
+        assertNotSame(json, changed, "a changed book should be serialized again");
+        assertEquals(objectMapper.writeValueAsString(new Book(1L, "new title", "author")), new String(changed, "UTF-8"),
+            "the refreshed JSON should reflect the change");
+        assertSame(changed, cache.get(new Book(1L, "new title", "author")),
+            "the refreshed JSON should replace the stale entry");
+    }
+
+    @Test
+    public void testBounded() {
+
+        BookJsonCache cache = new BookJsonCache(objectMapper, 2);
+
+        for (long id = 1; id <= 5; id++) {
+            cache.get(new Book(id, "title " + id, "author"));
+        }
+
+        assertEquals(2, cache.size(), "the cache should not grow beyond its maximum size");
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+
+        BookJsonCache cache = new BookJsonCache(objectMapper, 2);
+
+        byte[] first = cache.get(new Book(1L, "title 1", "author"));
+        byte[] second = cache.get(new Book(2L, "title 2", "author"));
+        cache.get(new Book(1L, "title 1", "author"));
+        cache.get(new Book(3L, "title 3", "author"));
+
+        assertSame(first, cache.get(new Book(1L, "title 1", "author")),
+            "a recently used book should stay in the cache");
+        assertNotSame(second, cache.get(new Book(2L, "title 2", "author")),
+            "the least recently used book should be evicted to make room for a new one");
+    }
+
+    @Test
+    public void testBoundedSize() {
+
+        BookJsonCache cache = new BookJsonCache(objectMapper, 100);
+
+        for (long id = 1; id <= 1_000; id++) {
+            cache.get(new Book(id, "title " + id, "author"));
+            assertTrue(cache.size() <= 100, "the cache should not grow beyond its maximum size");
+        }
+        assertTrue(cache.size() >= 90, "eviction should only drop the least recently used tenth of the entries");
+    }
+}
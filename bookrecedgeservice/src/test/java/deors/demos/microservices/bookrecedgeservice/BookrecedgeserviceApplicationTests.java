@@ -1,15 +1,72 @@
 package deors.demos.microservices.bookrecedgeservice;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import deors.demos.microservices.common.CachedJsonHttpMessageConverter;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
 
 @ExtendWith(SpringExtension.class)
 @SpringBootTest
 public class BookrecedgeserviceApplicationTests {
 
+    @Autowired
+    private BookController bookController;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private RequestMappingHandlerAdapter requestMappingHandlerAdapter;
+
     @Test
     public void contextLoads() {
     }
+
+    @Test
+    public void testBooksWrittenFromJsonCache() {
+
+        HttpMessageConverter<?> converter = requestMappingHandlerAdapter.getMessageConverters().stream()
+            .filter(candidate -> candidate.canWrite(Book.class, MediaType.APPLICATION_JSON))
+            .findFirst().orElseThrow();
+
+        assertTrue(converter instanceof CachedJsonHttpMessageConverter,
+            "books should be written as JSON by the converter backed by the JSON cache");
+        assertTrue(requestMappingHandlerAdapter.getMessageConverters().stream()
+            .anyMatch(candidate -> candidate instanceof MappingJackson2HttpMessageConverter
+                && !(candidate instanceof CachedJsonHttpMessageConverter)),
+            "the Jackson converter configured by Spring Boot should still be registered for other types");
+    }
+
+    @Test
+    public void testNoRevalidationWithCircuitOpen() {
+
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker("bookrec");
+        double refills = meterRegistry.get("bookrecedge.prefetch.refills").counter().count();
+        try {
+            circuitBreaker.transitionToForcedOpenState();
+            bookController.getFallbackBook();
+            bookController.getFallbackBooks(3);
+
+            assertEquals(refills, meterRegistry.get("bookrecedge.prefetch.refills").counter().count(),
+                "fallbacks should not start a refill while the circuit is open");
+        } finally {
+            circuitBreaker.transitionToClosedState();
+        }
+    }
 }
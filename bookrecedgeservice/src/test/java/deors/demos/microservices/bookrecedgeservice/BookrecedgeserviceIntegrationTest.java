@@ -97,4 +97,70 @@ public class BookrecedgeserviceIntegrationTest {
         assertTrue(response.getBody().contains("\"author\":\"isaac asimov [test]\""),
             "returned data should include the default book author configured for tests");
     }
+
+    @Test
+    public void testGetBookDefaultRecommendations() {
+
+        TestRestTemplate restTemplate = new TestRestTemplate();
+
+        HttpHeaders headers = new HttpHeaders();
+        HttpEntity<String> entity = new HttpEntity<String>(null, headers);
+
+        ResponseEntity<String> response = restTemplate.exchange(
+            TARGET_SERVER_URL + "bookrecedge?count=3",
+            HttpMethod.GET, entity, String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode(),
+            "call to /bookrecedge?count=3 should respond with code 200");
+
+        assertTrue(response.getBody().startsWith("["),
+            "returned data should be a list of books");
+
+        assertTrue(response.getBody().contains("\"title\":\"robots of dawn [test]\""),
+            "returned data should include the default book title configured for tests");
+    }
+
+    @Test
+    public void testGetBookDefaultRecommendationReactive() {
+
+        TestRestTemplate restTemplate = new TestRestTemplate();
+
+        HttpHeaders headers = new HttpHeaders();
+        HttpEntity<String> entity = new HttpEntity<String>(null, headers);
+
+        ResponseEntity<String> response = restTemplate.exchange(
+            TARGET_SERVER_URL + "bookrecedge/reactive",
+            HttpMethod.GET, entity, String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode(),
+            "call to /bookrecedge/reactive should respond with code 200");
+
+        assertTrue(response.getBody().contains("\"title\":\"robots of dawn [test]\""),
+            "returned data should include the default book title configured for tests");
+
+        assertTrue(response.getBody().contains("\"author\":\"isaac asimov [test]\""),
+            "returned data should include the default book author configured for tests");
+    }
+
+    @Test
+    public void testGetBookDefaultRecommendationsReactive() {
+
+        TestRestTemplate restTemplate = new TestRestTemplate();
+
+        HttpHeaders headers = new HttpHeaders();
+        HttpEntity<String> entity = new HttpEntity<String>(null, headers);
+
+        ResponseEntity<String> response = restTemplate.exchange(
+            TARGET_SERVER_URL + "bookrecedge/reactive?count=3",
+            HttpMethod.GET, entity, String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode(),
+            "call to /bookrecedge/reactive?count=3 should respond with code 200");
+
+        assertTrue(response.getBody().startsWith("["),
+            "returned data should be a list of books");
+
+        assertTrue(response.getBody().contains("\"title\":\"robots of dawn [test]\""),
+            "returned data should include the default book title configured for tests");
+    }
 }
@@ -0,0 +1,153 @@
+package deors.demos.microservices.bookrecedgeservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.loadbalancer.config.LoadBalancerZoneConfig;
+import org.springframework.cloud.loadbalancer.core.RoundRobinLoadBalancer;
+import org.springframework.cloud.loadbalancer.support.ServiceInstanceListSuppliers;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class HedgedBookrecClientTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(HedgedBookrecClientTest.class);
+
+    private static final int REQUESTS = Integer.getInteger("test.hedge.requests", 300);
+
+    private final List<StubBookrecInstance> stubs = new ArrayList<>();
+
+    private List<ServiceInstance> instances;
+
+    @BeforeEach
+    public void startStubs() throws IOException {
+
+        // both instances answer fast, but one in twenty responses takes 100 ms
+        for (String id : List.of("spiky-1", "spiky-2")) {
+            stubs.add(new StubBookrecInstance(id, () -> ThreadLocalRandom.current().nextInt(20) == 0 ? 100 : 2));
+        }
+        instances = stubs.stream().map(StubBookrecInstance::getInstance).toList();
+    }
+
+    @AfterEach
+    public void stopStubs() {
+
+        stubs.forEach(StubBookrecInstance::close);
+    }
+
+    private HedgedBookrecClient client(SimpleMeterRegistry registry, long budgetPercent) {
+
+        return client(registry, instances, instances, null, budgetPercent);
+    }
+
+    private static HedgedBookrecClient client(SimpleMeterRegistry registry, List<ServiceInstance> primaries,
+            List<ServiceInstance> instances, String zone, long budgetPercent) {
+
+        ServiceInstance[] candidates = primaries.toArray(new ServiceInstance[0]);
+        InstanceLatencyTracker tracker = new InstanceLatencyTracker(registry, LatencyAwareLoadBalancerTest.unlimited(), 2_000, 1_000);
+        return new HedgedBookrecClient(
+            () -> new RoundRobinLoadBalancer(ServiceInstanceListSuppliers.toProvider("bookrecservice", candidates), "bookrecservice"),
+            () -> instances, tracker, LatencyAwareLoadBalancerTest.unlimited(),
+            new ZoneAffinity(registry, new LoadBalancerZoneConfig(zone), tracker, true, 0.5, 500),
+            WebClient.builder().build(), registry, true, 0.9, 5, 20, budgetPercent);
+    }
+
+    private static double count(SimpleMeterRegistry registry, String name, String tag, String value) {
+
+        return registry.find(name).tag(tag, value).counters().stream().mapToDouble(counter -> counter.count()).sum();
+    }
+
+    private static void run(HedgedBookrecClient client, int requests) {
+
+        for (int i = 0; i < requests; i++) {
+            Book book = client.recommend().block();
+            assertTrue(book.getTitle().startsWith("spiky"), "every call should return a book from a stub");
+        }
+    }
+
+    @Test
+    public void testHedgeWinsAndLoserCancelled() throws IOException {
+
+        StubBookrecInstance slow = new StubBookrecInstance("slow", () -> 500);
+        StubBookrecInstance fast = new StubBookrecInstance("fast", () -> 2);
+        stubs.add(slow);
+        stubs.add(fast);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        // every primary goes to the slow instance, and there is budget for a hedge on every call
+        HedgedBookrecClient client = client(registry, List.of(slow.getInstance()),
+            List.of(slow.getInstance(), fast.getInstance()), null, 100);
+
+        int requests = 5;
+        for (int i = 0; i < requests; i++) {
+            assertEquals("fast", client.recommend().block().getTitle(), "the hedge should answer first");
+        }
+
+        assertEquals(requests, count(registry, "bookrecedge.hedge.requests", "result", "sent"),
+            "a hedge should be sent for every call");
+        assertEquals(requests, count(registry, "bookrecedge.hedge.wins", "winner", "hedge"),
+            "every hedge should be counted as the winner");
+        assertEquals(0, count(registry, "bookrecedge.hedge.wins", "winner", "primary"),
+            "no primary should be counted as the winner");
+        assertEquals(requests, count(registry, "bookrecedge.loadbalancer.requests", "outcome", "cancelled"),
+            "the primary request should be cancelled when the hedge wins");
+    }
+
+    @Test
+    public void testHedgesWithinBudget() {
+
+        SimpleMeterRegistry unhedgedRegistry = new SimpleMeterRegistry();
+        // without budget no hedge is ever sent
+        run(client(unhedgedRegistry, 0), REQUESTS);
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        run(client(registry, 20), REQUESTS);
+
+        double sent = count(registry, "bookrecedge.hedge.requests", "result", "sent");
+        logger.info(sent + " hedges sent for " + REQUESTS + " requests, "
+            + count(registry, "bookrecedge.hedge.wins", "winner", "hedge") + " answered first");
+
+        assertEquals(0, count(unhedgedRegistry, "bookrecedge.hedge.requests", "result", "sent"),
+            "no hedge should be sent without budget");
+        assertTrue(sent <= REQUESTS * 0.2, "hedges should not exceed the budget");
+        assertEquals(REQUESTS, count(registry, "bookrecedge.hedge.wins", "winner", "hedge")
+            + count(registry, "bookrecedge.hedge.wins", "winner", "primary"),
+            "every call should be won by either its primary or its hedge");
+        assertTrue(count(registry, "bookrecedge.hedge.wins", "winner", "hedge") <= sent,
+            "only sent hedges can win");
+    }
+
+    @Test
+    public void testHedgeStaysInLocalZone() throws IOException {
+
+        // the remote instance comes first and is the fastest, so it would be chosen without zone affinity
+        List<ServiceInstance> zoned = new ArrayList<>();
+        for (StubBookrecInstance stub : List.of(new StubBookrecInstance("remote", "zone2", () -> 1),
+                new StubBookrecInstance("local-slow", "zone1", () -> 500),
+                new StubBookrecInstance("local-fast", "zone1", () -> 2))) {
+            stubs.add(stub);
+            zoned.add(stub.getInstance());
+        }
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        HedgedBookrecClient client = client(registry, List.of(zoned.get(1)), zoned, "zone1", 100);
+
+        Book book = client.recommend().block();
+
+        assertEquals("local-fast", book.getTitle(), "the hedge should go to the other instance in the local zone");
+        assertEquals(1, registry.counter("bookrecedge.hedge.requests", "result", "sent").count(),
+            "the hedge should be counted");
+        assertEquals(1, registry.get("bookrecedge.zone.requests").tag("zone", "zone1").counter().count(),
+            "the hedge should be counted as a request to the local zone");
+    }
+}
@@ -0,0 +1,136 @@
+package deors.demos.microservices.bookrecedgeservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.loadbalancer.support.ServiceInstanceListSuppliers;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class InstanceConcurrencyLimitsTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(800);
+
+    private final ServiceInstance instance = new DefaultServiceInstance("one", "bookrecservice", "localhost", 8080, false);
+
+    private final ServiceInstance other = new DefaultServiceInstance("two", "bookrecservice", "localhost", 8081, false);
+
+    private static int limitOf(InstanceConcurrencyLimits limits, ServiceInstance instance) {
+
+        return (Integer) limits.snapshot().get(InstanceLatencyTracker.keyOf(instance)).get("limit");
+    }
+
+    @Test
+    public void testIncreaseWhileBusy() {
+
+        InstanceConcurrencyLimits limits = new InstanceConcurrencyLimits(new SimpleMeterRegistry(), true, 4, 1, 10, 500, 0.5);
+
+        for (int i = 0; i < 100; i++) {
+            for (int j = 0; j < 6; j++) {
+                limits.started(instance);
+            }
+            for (int j = 0; j < 6; j++) {
+                limits.completed(instance, FAST, false);
+            }
+        }
+
+        assertEquals(10, limitOf(limits, instance), "fast responses under load should raise the limit up to its maximum");
+    }
+
+    @Test
+    public void testIncreaseBoundedByUse() {
+
+        InstanceConcurrencyLimits limits = new InstanceConcurrencyLimits(new SimpleMeterRegistry(), true, 4, 1, 100, 500, 0.5);
+
+        for (int i = 0; i < 100; i++) {
+            for (int j = 0; j < 4; j++) {
+                limits.started(instance);
+            }
+            for (int j = 0; j < 4; j++) {
+                limits.completed(instance, FAST, false);
+            }
+        }
+
+        assertEquals(8, limitOf(limits, instance), "the limit should not grow beyond twice the requests in flight");
+    }
+
+    @Test
+    public void testDecreaseOnSlowOrFailed() {
+
+        InstanceConcurrencyLimits limits = new InstanceConcurrencyLimits(new SimpleMeterRegistry(), true, 8, 1, 10, 500, 0.5);
+
+        limits.started(instance);
+        limits.completed(instance, SLOW, false);
+        assertEquals(4, limitOf(limits, instance), "a slow response should cut the limit by the backoff ratio");
+
+        limits.started(instance);
+        limits.completed(instance, FAST, true);
+        assertEquals(2, limitOf(limits, instance), "a failed response should cut the limit by the backoff ratio");
+
+        for (int i = 0; i < 10; i++) {
+            limits.started(instance);
+            limits.completed(instance, SLOW, false);
+        }
+        assertEquals(1, limitOf(limits, instance), "the limit should not fall below its minimum");
+    }
+
+    @Test
+    public void testSkipSaturatedInstance() {
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        InstanceConcurrencyLimits limits = new InstanceConcurrencyLimits(registry, true, 2, 1, 10, 500, 0.5);
+        limits.started(instance);
+        limits.started(instance);
+
+        assertFalse(limits.hasCapacity(instance), "an instance with as many requests in flight as its limit should be full");
+        assertEquals(List.of(other), limits.available(List.of(instance, other)),
+            "only instances below their limit should be available");
+        assertEquals(1, registry.counter("bookrecedge.concurrency.rejected", "instance", "localhost:8080").count(),
+            "skipping a full instance should be counted");
+
+        limits.cancelled(instance);
+        assertTrue(limits.hasCapacity(instance), "a cancelled request should release its slot");
+    }
+
+    @Test
+    public void testShedWhenAllSaturated() {
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        InstanceConcurrencyLimits limits = new InstanceConcurrencyLimits(registry, true, 1, 1, 10, 500, 0.5);
+        InstanceLatencyTracker tracker = new InstanceLatencyTracker(registry, limits, 2_000, 1_000);
+        LatencyAwareLoadBalancer loadBalancer = new LatencyAwareLoadBalancer(
+            ServiceInstanceListSuppliers.toProvider("bookrecservice", instance, other), "bookrecservice", tracker, limits,
+            LatencyAwareLoadBalancerTest.noZones(tracker));
+        tracker.requestStarted(instance);
+        tracker.requestStarted(other);
+
+        assertFalse(loadBalancer.choose(new DefaultRequest<>()).block().hasServer(),
+            "with every instance at its limit, the request should be shed without a server");
+        assertEquals(1, limits.getShed(), "the shed request should be counted");
+
+        tracker.requestCompleted(other, FAST, false);
+        assertEquals(other, loadBalancer.choose(new DefaultRequest<>()).block().getServer(),
+            "a completed request should make its instance available again");
+    }
+
+    @Test
+    public void testDisabled() {
+
+        InstanceConcurrencyLimits limits = new InstanceConcurrencyLimits(new SimpleMeterRegistry(), false, 1, 1, 10, 500, 0.5);
+        limits.started(instance);
+        limits.started(instance);
+
+        assertTrue(limits.hasCapacity(instance), "a disabled limit should never be full");
+        assertEquals(List.of(instance), limits.available(List.of(instance)), "a disabled limit should not filter instances");
+    }
+}
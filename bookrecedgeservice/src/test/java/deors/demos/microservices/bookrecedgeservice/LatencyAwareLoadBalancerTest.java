@@ -0,0 +1,160 @@
+package deors.demos.microservices.bookrecedgeservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.CompletionContext;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.config.LoadBalancerZoneConfig;
+import org.springframework.cloud.loadbalancer.core.RoundRobinLoadBalancer;
+import org.springframework.cloud.loadbalancer.support.ServiceInstanceListSuppliers;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class LatencyAwareLoadBalancerTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(LatencyAwareLoadBalancerTest.class);
+
+    private static final int REQUESTS = Integer.getInteger("test.loadbalancer.requests", 1000);
+
+    private static final int THREADS = 4;
+
+    private final List<StubBookrecInstance> stubs = new ArrayList<>();
+
+    private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    private ServiceInstance[] instances;
+
+    @BeforeEach
+    public void startStubs() throws IOException {
+
+        // two healthy instances and a slow one
+        instances = new ServiceInstance[] {
+            startStub("fast-1", 2), startStub("fast-2", 2), startStub("slow", 100) };
+    }
+
+    @AfterEach
+    public void stopStubs() {
+
+        stubs.forEach(StubBookrecInstance::close);
+    }
+
+    private ServiceInstance startStub(String id, long delayMillis) throws IOException {
+
+        StubBookrecInstance stub = new StubBookrecInstance(id, () -> delayMillis);
+        stubs.add(stub);
+        return stub.getInstance();
+    }
+
+    private void run(ReactorServiceInstanceLoadBalancer loadBalancer, InstanceLatencyTracker tracker,
+            Map<String, AtomicInteger> choices) throws Exception {
+
+        AtomicInteger remaining = new AtomicInteger(REQUESTS);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            workers.add(executor.submit(() -> {
+                while (remaining.getAndDecrement() > 0) {
+                    Request<Object> request = new DefaultRequest<>(new RequestDataContext());
+                    Response<ServiceInstance> response = loadBalancer.choose(request).block();
+                    ServiceInstance instance = response.getServer();
+                    choices.computeIfAbsent(instance.getInstanceId(), id -> new AtomicInteger()).incrementAndGet();
+                    tracker.onStartRequest(request, response);
+                    httpClient.send(HttpRequest.newBuilder(URI.create(instance.getUri() + "/bookrec")).build(),
+                        HttpResponse.BodyHandlers.ofString());
+                    tracker.onComplete(new CompletionContext<>(CompletionContext.Status.SUCCESS, request, response));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        executor.shutdown();
+    }
+
+    static InstanceConcurrencyLimits unlimited() {
+
+        return new InstanceConcurrencyLimits(new SimpleMeterRegistry(), false, 20, 1, 200, 500, 0.9);
+    }
+
+    static ZoneAffinity noZones(InstanceLatencyTracker tracker) {
+
+        return new ZoneAffinity(new SimpleMeterRegistry(), new LoadBalancerZoneConfig(null), tracker, true, 0.5, 500);
+    }
+
+    @Test
+    public void testAvoidSlowInstance() throws Exception {
+
+        Map<String, AtomicInteger> roundRobinChoices = new ConcurrentHashMap<>();
+        run(new RoundRobinLoadBalancer(ServiceInstanceListSuppliers.toProvider("bookrecservice", instances), "bookrecservice"),
+            new InstanceLatencyTracker(new SimpleMeterRegistry(), unlimited(), 2_000, 1_000),
+            roundRobinChoices);
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        InstanceLatencyTracker tracker = new InstanceLatencyTracker(registry, unlimited(), 2_000, 1_000);
+        Map<String, AtomicInteger> latencyAwareChoices = new ConcurrentHashMap<>();
+        run(new LatencyAwareLoadBalancer(ServiceInstanceListSuppliers.toProvider("bookrecservice", instances), "bookrecservice", tracker, unlimited(),
+                noZones(tracker)),
+            tracker,
+            latencyAwareChoices);
+
+        logger.info("round robin choices " + roundRobinChoices + ", latency aware choices " + latencyAwareChoices);
+
+        // choices are asserted rather than response times, which depend on the load of the machine
+        assertTrue(roundRobinChoices.get("slow").get() >= REQUESTS / 3 - 1,
+            "round robin should send the slow instance its share of the requests");
+        assertTrue(latencyAwareChoices.getOrDefault("slow", new AtomicInteger()).get() < REQUESTS / 100,
+            "the slow instance should receive less than 1% of the requests");
+        assertEquals(REQUESTS, registry.find("bookrecedge.loadbalancer.requests").counters().stream()
+            .mapToDouble(counter -> counter.count()).sum(),
+            "every request should be counted by instance");
+    }
+
+    @Test
+    public void testPreferIdleInstance() {
+
+        InstanceLatencyTracker tracker = new InstanceLatencyTracker(new SimpleMeterRegistry(), unlimited(), 2_000, 1_000);
+        long now = System.nanoTime();
+        tracker.statsOf(instances[0]).observe(TimeUnit.MILLISECONDS.toNanos(5), now);
+        tracker.statsOf(instances[1]).observe(TimeUnit.MILLISECONDS.toNanos(5), now);
+        for (int i = 0; i < 3; i++) {
+            tracker.onStartRequest(new DefaultRequest<>(new RequestDataContext()),
+                new org.springframework.cloud.client.loadbalancer.DefaultResponse(instances[0]));
+        }
+
+        LatencyAwareLoadBalancer loadBalancer = new LatencyAwareLoadBalancer(
+            ServiceInstanceListSuppliers.toProvider("bookrecservice", instances[0], instances[1]), "bookrecservice", tracker, unlimited(),
+            noZones(tracker));
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(instances[1], loadBalancer.choose(new DefaultRequest<>()).block().getServer(),
+                "with equal latencies, the instance with fewer requests in flight should be chosen");
+        }
+    }
+}
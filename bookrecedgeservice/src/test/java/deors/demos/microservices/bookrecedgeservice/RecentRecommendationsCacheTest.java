@@ -0,0 +1,81 @@
+package deors.demos.microservices.bookrecedgeservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class RecentRecommendationsCacheTest {
+
+    @Test
+    public void testEmpty() {
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RecentRecommendationsCache cache = new RecentRecommendationsCache(registry, 4, 60_000);
+
+        assertTrue(cache.random().isEmpty(), "an empty cache should have nothing to serve");
+        assertTrue(cache.random(3).isEmpty(), "an empty cache should have nothing to serve");
+        assertEquals(2, registry.counter("bookrecedge.recent.fallbacks", "result", "miss").count(),
+            "fallbacks without recent books should be counted as misses");
+    }
+
+    @Test
+    public void testEvictOldest() {
+
+        RecentRecommendationsCache cache = new RecentRecommendationsCache(new SimpleMeterRegistry(), 4, 60_000);
+
+        for (long id = 1; id <= 10; id++) {
+            cache.record(new Book(id, "title " + id, "author"));
+        }
+
+        assertEquals(4, cache.size(), "the cache should not grow beyond its capacity");
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            ids.add(cache.random().get().getId());
+        }
+        assertEquals(Set.of(7L, 8L, 9L, 10L), ids, "only the most recent books should be served");
+    }
+
+    @Test
+    public void testRandomDistinct() {
+
+        RecentRecommendationsCache cache = new RecentRecommendationsCache(new SimpleMeterRegistry(), 16, 60_000);
+
+        for (long id = 1; id <= 16; id++) {
+            cache.record(new Book(id, "title " + id, "author"));
+        }
+        List<Book> books = cache.random(5);
+
+        assertTrue(!books.isEmpty() && books.size() <= 5, "up to the requested number of books should be served");
+        assertEquals(books.size(), books.stream().map(Book::getId).distinct().count(),
+            "books should not be repeated in one fallback");
+    }
+
+    @Test
+    public void testMaxStaleness() {
+
+        AtomicLong now = new AtomicLong(1_000);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RecentRecommendationsCache cache = new RecentRecommendationsCache(now::get, registry, 4, 500);
+
+        cache.record(new Book(1L, "title", "author"));
+        now.addAndGet(200);
+
+        Optional<Book> book = cache.random();
+        assertTrue(book.isPresent(), "a recent enough book should be served");
+        assertEquals(200, registry.timer("bookrecedge.recent.staleness").max(TimeUnit.MILLISECONDS),
+            "the age of the served book should be recorded");
+
+        now.addAndGet(400);
+        assertTrue(cache.random().isEmpty(), "books older than the maximum staleness should not be served");
+    }
+}
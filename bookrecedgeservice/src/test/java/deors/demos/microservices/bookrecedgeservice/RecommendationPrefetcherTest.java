@@ -0,0 +1,165 @@
+package deors.demos.microservices.bookrecedgeservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+public class RecommendationPrefetcherTest {
+
+    private static RecentRecommendationsCache recent() {
+        return new RecentRecommendationsCache(new SimpleMeterRegistry(), 100, 60_000);
+    }
+
+    private static List<Book> batch(long firstId, int count) {
+        List<Book> books = new ArrayList<>();
+        for (long id = firstId; id < firstId + count; id++) {
+            books.add(new Book(id, "title " + id, "author"));
+        }
+        return books;
+    }
+
+    @Test
+    public void testServeFromBuffer() {
+
+        AtomicInteger calls = new AtomicInteger();
+        RecommendationPrefetcher prefetcher = new RecommendationPrefetcher(
+            count -> Mono.just(batch(calls.getAndIncrement() * 100L, count)),
+            System::currentTimeMillis, recent(), new SimpleMeterRegistry(), true, 10, 1, 60_000, 1_000, 30_000);
+
+        assertTrue(prefetcher.take().isEmpty(), "the first request should find the buffer empty");
+
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 8; i++) {
+            Optional<Book> book = prefetcher.take();
+            assertTrue(book.isPresent(), "requests should be served from the prefetched batch");
+            ids.add(book.get().getId());
+        }
+
+        assertEquals(8, ids.size(), "every prefetched recommendation should be handed out once");
+        assertEquals(1, calls.get(), "eight requests should be served with a single downstream call");
+    }
+
+    @Test
+    public void testCoalesceRefills() {
+
+        AtomicInteger calls = new AtomicInteger();
+        Sinks.One<List<Book>> pending = Sinks.one();
+        RecommendationPrefetcher prefetcher = new RecommendationPrefetcher(
+            count -> {
+                calls.incrementAndGet();
+                return pending.asMono();
+            },
+            System::currentTimeMillis, recent(), new SimpleMeterRegistry(), true, 10, 2, 60_000, 1_000, 30_000);
+
+        for (int i = 0; i < 5; i++) {
+            prefetcher.take();
+        }
+        assertEquals(1, calls.get(), "requests arriving during a refill should not start another one");
+
+        pending.tryEmitValue(batch(0, 10));
+        assertEquals(10, prefetcher.size(), "the batch should be added once the refill completes");
+
+        prefetcher.take();
+        assertEquals(1, calls.get(), "no refill should start while the buffer is above the low watermark");
+    }
+
+    @Test
+    public void testDropExpired() {
+
+        AtomicLong now = new AtomicLong(1_000);
+        AtomicInteger calls = new AtomicInteger();
+        RecommendationPrefetcher prefetcher = new RecommendationPrefetcher(
+            count -> Mono.just(batch(calls.getAndIncrement() * 100L, count)),
+            now::get, recent(), new SimpleMeterRegistry(), true, 5, 0, 100, 1_000, 30_000);
+
+        prefetcher.refill();
+        now.addAndGet(101);
+
+        assertTrue(prefetcher.take().isEmpty(), "recommendations older than the maximum age should not be served");
+        assertEquals(2, calls.get(), "dropping the expired recommendations should trigger a refill");
+        assertEquals(100L, prefetcher.take().get().getId(), "the refilled recommendations should be served");
+    }
+
+    @Test
+    public void testRefillFailure() {
+
+        AtomicLong now = new AtomicLong(1_000);
+        AtomicInteger calls = new AtomicInteger();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RecommendationPrefetcher prefetcher = new RecommendationPrefetcher(
+            count -> {
+                calls.incrementAndGet();
+                return Mono.error(new IllegalStateException("bookrecservice unavailable"));
+            },
+            now::get, recent(), registry, true, 5, 0, 100, 1_000, 30_000);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(prefetcher.take().isEmpty(), "a failed refill should leave the buffer empty");
+        }
+        assertEquals(1, calls.get(), "no refill should start during the backoff after a failure");
+
+        now.addAndGet(1_000);
+        prefetcher.take();
+        assertEquals(2, calls.get(), "a refill should start once the backoff has passed");
+
+        now.addAndGet(1_000);
+        prefetcher.take();
+        assertEquals(2, calls.get(), "the backoff should double after consecutive failures");
+        now.addAndGet(1_000);
+        prefetcher.take();
+        assertEquals(3, calls.get(), "a refill should start once the doubled backoff has passed");
+        assertEquals(3, registry.get("bookrecedge.prefetch.failures").counter().count(),
+            "every failed refill should be counted");
+    }
+
+    @Test
+    public void testBackoffResetAfterSuccess() {
+
+        AtomicLong now = new AtomicLong(1_000);
+        AtomicInteger calls = new AtomicInteger();
+        RecommendationPrefetcher prefetcher = new RecommendationPrefetcher(
+            count -> calls.incrementAndGet() == 2
+                ? Mono.just(batch(0, count))
+                : Mono.error(new IllegalStateException("bookrecservice unavailable")),
+            now::get, recent(), new SimpleMeterRegistry(), false, 5, 0, 60_000, 1_000, 30_000);
+
+        prefetcher.refill();
+        now.addAndGet(1_000);
+        prefetcher.refill();
+        prefetcher.refill();
+        assertEquals(3, calls.get(), "a successful refill should not be followed by a backoff");
+
+        now.addAndGet(1_000);
+        prefetcher.refill();
+        assertEquals(4, calls.get(), "the backoff should start over after a successful refill");
+    }
+
+    @Test
+    public void testRecordRecent() {
+
+        RecentRecommendationsCache recent = recent();
+        RecommendationPrefetcher prefetcher = new RecommendationPrefetcher(
+            count -> Mono.just(batch(0, count)),
+            System::currentTimeMillis, recent, new SimpleMeterRegistry(), false, 5, 0, 60_000, 1_000, 30_000);
+
+        assertTrue(prefetcher.take().isEmpty(), "nothing should be served when prefetching is disabled");
+
+        prefetcher.refill();
+
+        assertEquals(0, prefetcher.size(), "nothing should be buffered when prefetching is disabled");
+        assertEquals(5, recent.size(), "refilled books should still be kept as recent recommendations");
+    }
+}
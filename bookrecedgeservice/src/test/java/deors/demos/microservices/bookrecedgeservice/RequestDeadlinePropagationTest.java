@@ -0,0 +1,109 @@
+package deors.demos.microservices.bookrecedgeservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.sun.net.httpserver.Headers;
+
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+
+public class RequestDeadlinePropagationTest {
+
+    private StubBookrecInstance stub;
+
+    private String url;
+
+    @BeforeEach
+    public void startStub() throws Exception {
+
+        stub = new StubBookrecInstance("stub", () -> 0);
+        url = stub.getInstance().getUri() + "/bookrec";
+    }
+
+    @AfterEach
+    public void stopStub() {
+
+        stub.close();
+    }
+
+    private void assertDeadline(long before, long budgetMillis) {
+
+        Headers headers = stub.getLastRequestHeaders();
+        long sent = Long.parseLong(headers.getFirst(RequestDeadlinePropagation.SENT_HEADER));
+        long deadline = Long.parseLong(headers.getFirst(RequestDeadlinePropagation.DEADLINE_HEADER));
+
+        assertTrue(sent >= before && sent <= System.currentTimeMillis(), "the sent time should be when the call was made");
+        assertEquals(budgetMillis, deadline - sent, "the deadline should be the sent time plus the budget");
+    }
+
+    @Test
+    public void testRestTemplate() {
+
+        RequestDeadlinePropagation propagation = new RequestDeadlinePropagation(true, 800);
+        long before = System.currentTimeMillis();
+
+        propagation.apply(new RestTemplate()).getForObject(url, Book.class);
+
+        assertDeadline(before, 800);
+    }
+
+    @Test
+    public void testWebClient() {
+
+        RequestDeadlinePropagation propagation = new RequestDeadlinePropagation(true, 800);
+        WebClient webClient = propagation.apply(WebClient.builder()).build();
+        long before = System.currentTimeMillis();
+
+        webClient.get().uri(url).retrieve().bodyToMono(Book.class).block();
+
+        assertDeadline(before, 800);
+    }
+
+    @Test
+    public void testRequestDeadlineKept() throws Exception {
+
+        RequestDeadlinePropagation propagation = new RequestDeadlinePropagation(true, 800);
+        long deadline = propagation.newDeadline();
+        Thread.sleep(20);
+
+        propagation.bind(deadline, () -> propagation.apply(new RestTemplate()).getForObject(url, Book.class));
+        assertEquals(Long.toString(deadline), stub.getLastRequestHeaders().getFirst(RequestDeadlinePropagation.DEADLINE_HEADER),
+            "a blocking call should carry the deadline of the request, however late it is sent");
+
+        propagation.apply(WebClient.builder()).build().get().uri(url).retrieve().bodyToMono(Book.class)
+            .contextWrite(propagation.deadlineContext(deadline)).block();
+        assertEquals(Long.toString(deadline), stub.getLastRequestHeaders().getFirst(RequestDeadlinePropagation.DEADLINE_HEADER),
+            "a reactive call should carry the deadline of the request, however late it is sent");
+    }
+
+    @Test
+    public void testBudgetFromTimeLimiter() {
+
+        TimeLimiterRegistry registry = TimeLimiterRegistry.of(
+            TimeLimiterConfig.custom().timeoutDuration(Duration.ofMillis(750)).build());
+
+        assertEquals(750, new RequestDeadlinePropagation(true, registry).getBudgetMillis(),
+            "the budget should be the timeout of the bookrec time limiter");
+    }
+
+    @Test
+    public void testDisabled() {
+
+        RequestDeadlinePropagation propagation = new RequestDeadlinePropagation(false, 800);
+
+        propagation.apply(new RestTemplate()).getForObject(url, Book.class);
+
+        assertNull(stub.getLastRequestHeaders().getFirst(RequestDeadlinePropagation.DEADLINE_HEADER),
+            "no deadline should be sent when propagation is disabled");
+    }
+}
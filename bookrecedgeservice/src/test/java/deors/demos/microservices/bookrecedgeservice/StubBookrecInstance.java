@@ -0,0 +1,76 @@
+package deors.demos.microservices.bookrecedgeservice;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.LongSupplier;
+
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for a bookrecservice instance, answering /bookrec after a given delay.
+ */
+public class StubBookrecInstance implements AutoCloseable {
+
+    static {
+        // otherwise Nagle's algorithm and delayed ACKs add up to 40 ms to every stub response
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final ServiceInstance instance;
+
+    private volatile Headers lastRequestHeaders;
+
+    public StubBookrecInstance(String id, LongSupplier delayMillis) throws IOException {
+        this(id, null, delayMillis);
+    }
+
+    public StubBookrecInstance(String id, String zone, LongSupplier delayMillis) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/bookrec", exchange -> {
+            lastRequestHeaders = exchange.getRequestHeaders();
+            try {
+                Thread.sleep(delayMillis.getAsLong());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = ("{\"id\":1,\"title\":\"" + id + "\",\"author\":\"author\"}").getBytes();
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            } catch (IOException e) {
+                // the client went away, e.g. a cancelled hedged request
+            }
+        });
+        server.start();
+        instance = new DefaultServiceInstance(id, "bookrecservice", "localhost", server.getAddress().getPort(), false,
+            zone == null ? Map.of() : Map.of(ZoneAffinity.ZONE_METADATA, zone));
+    }
+
+    public ServiceInstance getInstance() {
+        return instance;
+    }
+
+    public Headers getLastRequestHeaders() {
+        return lastRequestHeaders;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,81 @@
+package deors.demos.microservices.bookrecedgeservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class WireFormatBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(WireFormatBenchmarkTest.class);
+
+    private static final int ITERATIONS = Integer.getInteger("test.wireformat.iterations", 2000);
+
+    // the same mappers that the message converters and codecs use
+    private final ObjectMapper json = Jackson2ObjectMapperBuilder.json().build();
+
+    private final ObjectMapper cbor = Jackson2ObjectMapperBuilder.cbor().build();
+
+    private static Book[] books(int count) {
+
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            books.add(new Book(1L + i * 50L, "the hitchhiker's guide to the galaxy, part " + i, "douglas adams"));
+        }
+        return books.toArray(new Book[0]);
+    }
+
+    // nanoseconds to write and read back the books, after a warm up of the same length
+    private static long roundTripNanos(ObjectMapper mapper, Book[] books) throws Exception {
+
+        long elapsed = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                mapper.readValue(mapper.writeValueAsBytes(books), Book[].class);
+            }
+            elapsed = System.nanoTime() - start;
+        }
+        return elapsed / ITERATIONS;
+    }
+
+    @Test
+    public void testCborRoundTrip() throws Exception {
+
+        Book[] books = books(3);
+
+        Book[] decoded = cbor.readValue(cbor.writeValueAsBytes(books), Book[].class);
+
+        assertEquals(books.length, decoded.length, "every book should be decoded");
+        for (int i = 0; i < books.length; i++) {
+            assertEquals(books[i].getId(), decoded[i].getId(), "ids should survive the round trip");
+            assertEquals(books[i].getTitle(), decoded[i].getTitle(), "titles should survive the round trip");
+            assertEquals(books[i].getAuthor(), decoded[i].getAuthor(), "authors should survive the round trip");
+        }
+    }
+
+    @Test
+    public void testCompareSizeAndCost() throws Exception {
+
+        for (int count : new int[] { 1, 10, 100 }) {
+            Book[] books = books(count);
+            int jsonBytes = json.writeValueAsBytes(books).length;
+            int cborBytes = cbor.writeValueAsBytes(books).length;
+            long jsonNanos = roundTripNanos(json, books);
+            long cborNanos = roundTripNanos(cbor, books);
+
+            logger.info(count + " books: json " + jsonBytes + " bytes, " + jsonNanos / 1000 + " us; cbor "
+                + cborBytes + " bytes, " + cborNanos / 1000 + " us");
+
+            assertTrue(cborBytes < jsonBytes, "CBOR payloads should be smaller than JSON for " + count + " books");
+        }
+    }
+}
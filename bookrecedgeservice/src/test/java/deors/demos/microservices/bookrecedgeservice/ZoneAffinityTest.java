@@ -0,0 +1,186 @@
+package deors.demos.microservices.bookrecedgeservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.loadbalancer.config.LoadBalancerZoneConfig;
+import org.springframework.cloud.loadbalancer.support.ServiceInstanceListSuppliers;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ZoneAffinityTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ZoneAffinityTest.class);
+
+    private static final int REQUESTS = Integer.getInteger("test.zone.requests", 300);
+
+    // added to every response from the remote zone, standing for the round trip between zones
+    private static final long CROSS_ZONE_MILLIS = 20;
+
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(800);
+
+    private final List<StubBookrecInstance> stubs = new ArrayList<>();
+
+    private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    private final ServiceInstance local1 = instance("local-1", "zone1");
+
+    private final ServiceInstance local2 = instance("local-2", "zone1");
+
+    private final ServiceInstance remote = instance("remote", "zone2");
+
+    @AfterEach
+    public void stopStubs() {
+
+        stubs.forEach(StubBookrecInstance::close);
+    }
+
+    private static ServiceInstance instance(String id, String zone) {
+
+        return new DefaultServiceInstance(id, "bookrecservice", id, 8080, false, Map.of(ZoneAffinity.ZONE_METADATA, zone));
+    }
+
+    private ServiceInstance startStub(String id, String zone, long delayMillis) throws IOException {
+
+        StubBookrecInstance stub = new StubBookrecInstance(id, zone, () -> delayMillis);
+        stubs.add(stub);
+        return stub.getInstance();
+    }
+
+    private static InstanceLatencyTracker tracker() {
+
+        return new InstanceLatencyTracker(new SimpleMeterRegistry(), LatencyAwareLoadBalancerTest.unlimited(), 2_000, 1_000);
+    }
+
+    private static ZoneAffinity zoneAffinity(SimpleMeterRegistry registry, String zone, InstanceLatencyTracker tracker) {
+
+        return new ZoneAffinity(registry, new LoadBalancerZoneConfig(zone), tracker, true, 0.5, 500);
+    }
+
+    private static double count(SimpleMeterRegistry registry, String zone) {
+
+        return registry.find("bookrecedge.zone.requests").tag("zone", zone).counters().stream()
+            .mapToDouble(counter -> counter.count()).sum();
+    }
+
+    @Test
+    public void testPreferLocalZone() {
+
+        ZoneAffinity zoneAffinity = zoneAffinity(new SimpleMeterRegistry(), "zone1", tracker());
+
+        assertEquals(List.of(local1, local2), zoneAffinity.candidates(List.of(local1, remote, local2), System.nanoTime()),
+            "only the instances in the local zone should be candidates while they are healthy");
+    }
+
+    @Test
+    public void testNoLocalZone() {
+
+        ZoneAffinity zoneAffinity = zoneAffinity(new SimpleMeterRegistry(), null, tracker());
+
+        assertEquals(List.of(local1, remote), zoneAffinity.candidates(List.of(local1, remote), System.nanoTime()),
+            "without a zone for the edge, every instance should be a candidate");
+    }
+
+    @Test
+    public void testFailOverWhenLocalZoneSlow() {
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        InstanceLatencyTracker tracker = tracker();
+        ZoneAffinity zoneAffinity = zoneAffinity(registry, "zone1", tracker);
+        long now = System.nanoTime();
+
+        tracker.statsOf(local1).observe(SLOW, now);
+        assertEquals(List.of(local1, local2), zoneAffinity.candidates(List.of(local1, local2, remote), now),
+            "with half of the local zone healthy, traffic should stay in it");
+
+        tracker.statsOf(local2).observe(SLOW, now);
+        assertEquals(List.of(local1, local2, remote), zoneAffinity.candidates(List.of(local1, local2, remote), now),
+            "with no healthy instance in the local zone, every instance should be a candidate");
+        assertEquals(1, registry.get("bookrecedge.zone.failovers").counter().count(),
+            "the failover should be counted");
+    }
+
+    @Test
+    public void testFailOverWhenLocalZoneSaturated() {
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        InstanceConcurrencyLimits limits = new InstanceConcurrencyLimits(registry, true, 1, 1, 10, 500, 0.5);
+        InstanceLatencyTracker tracker = new InstanceLatencyTracker(registry, limits, 2_000, 1_000);
+        LatencyAwareLoadBalancer loadBalancer = new LatencyAwareLoadBalancer(
+            ServiceInstanceListSuppliers.toProvider("bookrecservice", local1, remote), "bookrecservice", tracker, limits,
+            zoneAffinity(registry, "zone1", tracker));
+
+        assertEquals(local1, loadBalancer.choose(new DefaultRequest<>()).block().getServer(),
+            "the local instance should be chosen while it has capacity");
+        tracker.requestStarted(local1);
+        assertEquals(remote, loadBalancer.choose(new DefaultRequest<>()).block().getServer(),
+            "with the local instance at its limit, the request should fail over to the other zone");
+
+        assertEquals(1, count(registry, "zone1"), "requests to the local zone should be counted");
+        assertEquals(1, count(registry, "zone2"), "requests to the remote zone should be counted");
+        assertEquals(1, registry.get("bookrecedge.zone.requests").tag("zone", "zone2").tag("local", "false")
+            .counter().count(), "requests to the remote zone should be tagged as not local");
+    }
+
+    private void run(LatencyAwareLoadBalancer loadBalancer, InstanceLatencyTracker tracker) throws Exception {
+
+        for (int i = 0; i < REQUESTS; i++) {
+            ServiceInstance instance = loadBalancer.choose(new DefaultRequest<>()).block().getServer();
+            tracker.requestStarted(instance);
+            long start = System.nanoTime();
+            httpClient.send(HttpRequest.newBuilder(URI.create(instance.getUri() + "/bookrec")).build(),
+                HttpResponse.BodyHandlers.ofString());
+            long elapsed = System.nanoTime() - start;
+            tracker.requestCompleted(instance, elapsed, false);
+        }
+    }
+
+    @Test
+    public void testCrossZoneShare() throws Exception {
+
+        ServiceInstance[] instances = {
+            startStub("zone1-1", "zone1", 1), startStub("zone1-2", "zone1", 1),
+            startStub("zone2-1", "zone2", 1 + CROSS_ZONE_MILLIS), startStub("zone2-2", "zone2", 1 + CROSS_ZONE_MILLIS) };
+
+        SimpleMeterRegistry unawareRegistry = new SimpleMeterRegistry();
+        InstanceLatencyTracker unawareTracker = tracker();
+        run(new LatencyAwareLoadBalancer(
+            ServiceInstanceListSuppliers.toProvider("bookrecservice", instances), "bookrecservice", unawareTracker,
+            LatencyAwareLoadBalancerTest.unlimited(), zoneAffinity(unawareRegistry, null, unawareTracker)),
+            unawareTracker);
+
+        SimpleMeterRegistry affineRegistry = new SimpleMeterRegistry();
+        InstanceLatencyTracker affineTracker = tracker();
+        run(new LatencyAwareLoadBalancer(
+            ServiceInstanceListSuppliers.toProvider("bookrecservice", instances), "bookrecservice", affineTracker,
+            LatencyAwareLoadBalancerTest.unlimited(), zoneAffinity(affineRegistry, "zone1", affineTracker)),
+            affineTracker);
+
+        double unawareRemoteShare = count(unawareRegistry, "zone2") / REQUESTS;
+        double affineRemoteShare = count(affineRegistry, "zone2") / REQUESTS;
+        logger.info(String.format("remote zone share: %.1f%% zone unaware, %.1f%% zone affine",
+            unawareRemoteShare * 100, affineRemoteShare * 100));
+
+        assertEquals(0, affineRemoteShare, "no request should leave a healthy local zone");
+        // choices are asserted rather than response times, which depend on the load of the machine
+        assertTrue(unawareRemoteShare > 0.05,
+            "without zone affinity, some requests should reach the remote zone");
+    }
+}
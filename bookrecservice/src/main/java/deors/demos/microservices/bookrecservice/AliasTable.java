@@ -0,0 +1,83 @@
+package deors.demos.microservices.bookrecservice;
+
+import java.util.Random;
+
+/**
+ * Walker's alias method (Vose's variant): after an O(n) build, every weighted pick costs
+ * one uniform draw and one biased coin flip, whatever the number of entries.
+ */
+public class AliasTable {
+
+    private final long[] ids;
+
+    private final double[] probabilities;
+
+    private final int[] aliases;
+
+    public AliasTable(long[] ids, double[] weights) {
+        if (ids.length != weights.length) {
+            throw new IllegalArgumentException("ids and weights must have the same length");
+        }
+        int n = ids.length;
+        this.ids = ids.clone();
+        this.probabilities = new double[n];
+        this.aliases = new int[n];
+
+        double total = 0.0;
+        for (double weight : weights) {
+            if (weight < 0.0 || Double.isNaN(weight)) {
+                throw new IllegalArgumentException("weights must be non-negative numbers");
+            }
+            total += weight;
+        }
+        if (n == 0) {
+            return;
+        }
+
+        // scaled so that the average weight is 1, then split into under-full and over-full columns
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = total > 0.0 ? weights[i] * n / total : 1.0;
+            if (scaled[i] < 1.0) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            probabilities[less] = scaled[less];
+            aliases[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+            if (scaled[more] < 1.0) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        // leftovers are full columns, up to floating point error
+        while (largeCount > 0) {
+            probabilities[large[--largeCount]] = 1.0;
+        }
+        while (smallCount > 0) {
+            probabilities[small[--smallCount]] = 1.0;
+        }
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public long sample(Random random) {
+        if (ids.length == 0) {
+            throw new IllegalStateException("cannot sample from an empty alias table");
+        }
+        int column = random.nextInt(ids.length);
+        return random.nextDouble() < probabilities[column] ? ids[column] : ids[aliases[column]];
+    }
+}
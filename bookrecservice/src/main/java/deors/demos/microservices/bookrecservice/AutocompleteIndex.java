@@ -0,0 +1,299 @@
+package deors.demos.microservices.bookrecservice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Immutable prefix index for type-ahead suggestions. Every suggestion (a title or an author)
+ * is stored once, and can be completed from the start of any of its words; those word starts
+ * are the keys, kept as a suggestion number and an offset into its normalized text, so that
+ * no substring is ever materialized. Keys are sorted by the text from their offset on, so the
+ * keys sharing a prefix form a contiguous range, found by binary search; this plays the role
+ * of a flattened trie. A segment tree over the key weights answers "heaviest key in a range"
+ * in O(log n), which gives the top-k of any prefix in O(k log n) no matter how many keys
+ * share it, with no per-node top-k lists to store.
+ */
+public class AutocompleteIndex {
+
+    public static final String TITLE = "title";
+
+    public static final String AUTHOR = "author";
+
+    // by suggestion
+    private final String[] normalized;
+
+    private final String[] texts;
+
+    private final String[] types;
+
+    private final long[] bookIds;
+
+    private final long[] weights;
+
+    // by key, in key order
+    private final int[] keySuggestions;
+
+    private final int[] keyOffsets;
+
+    // leaves hold positions in the key arrays, inner nodes hold the position of the heaviest leaf below them
+    private final int[] tree;
+
+    private final int leaves;
+
+    private AutocompleteIndex(List<Candidate> candidates) {
+        int suggestions = candidates.size();
+        normalized = new String[suggestions];
+        texts = new String[suggestions];
+        types = new String[suggestions];
+        bookIds = new long[suggestions];
+        weights = new long[suggestions];
+        int n = 0;
+        for (int i = 0; i < suggestions; i++) {
+            Candidate candidate = candidates.get(i);
+            normalized[i] = candidate.normalized;
+            texts[i] = candidate.text;
+            types[i] = candidate.type;
+            bookIds[i] = candidate.bookId;
+            weights[i] = candidate.weight;
+            n += candidate.words;
+        }
+        Integer[] order = new Integer[n];
+        int[] suggestionOf = new int[n];
+        int[] offsetOf = new int[n];
+        int key = 0;
+        for (int i = 0; i < suggestions; i++) {
+            String text = normalized[i];
+            int offset = 0;
+            while (offset >= 0) {
+                suggestionOf[key] = i;
+                offsetOf[key] = offset;
+                order[key] = key;
+                key++;
+                // authors are only completed from their start
+                int space = TITLE.equals(types[i]) ? text.indexOf(' ', offset) : -1;
+                offset = space < 0 ? -1 : space + 1;
+            }
+        }
+        // heaviest first among equal keys, so that ties in the tree go to the first position
+        Arrays.sort(order, (a, b) -> {
+            int byKey = compare(normalized[suggestionOf[a]], offsetOf[a], normalized[suggestionOf[b]], offsetOf[b]);
+            return byKey != 0 ? byKey : Long.compare(weights[suggestionOf[b]], weights[suggestionOf[a]]);
+        });
+        keySuggestions = new int[n];
+        keyOffsets = new int[n];
+        for (int i = 0; i < n; i++) {
+            keySuggestions[i] = suggestionOf[order[i]];
+            keyOffsets[i] = offsetOf[order[i]];
+        }
+        int size = 1;
+        while (size < n) {
+            size *= 2;
+        }
+        leaves = size;
+        tree = new int[2 * size];
+        Arrays.fill(tree, -1);
+        for (int i = 0; i < n; i++) {
+            tree[size + i] = i;
+        }
+        for (int node = size - 1; node > 0; node--) {
+            tree[node] = heavier(tree[2 * node], tree[2 * node + 1]);
+        }
+    }
+
+    public int size() {
+        return keySuggestions.length;
+    }
+
+    public List<Suggestion> suggest(String prefix, int count) {
+        String key = normalize(prefix);
+        List<Suggestion> suggestions = new ArrayList<>(count);
+        if (key.isEmpty() || keySuggestions.length == 0 || count < 1) {
+            return suggestions;
+        }
+        int from = lowerBound(key);
+        int to = lowerBound(key + Character.MAX_VALUE);
+
+        // best-first walk over sub-ranges: pop the heaviest key, then split its range around it
+        PriorityQueue<int[]> ranges = new PriorityQueue<>(
+            Comparator.comparingLong((int[] range) -> weightOf(range[2])).reversed()
+                .thenComparingInt(range -> range[2]));
+        offerRange(ranges, from, to);
+        Set<String> seen = new HashSet<>();
+        while (!ranges.isEmpty() && suggestions.size() < count) {
+            int[] range = ranges.poll();
+            int position = range[2];
+            int suggestion = keySuggestions[position];
+            // several keys (e.g. every word of a title) may lead to the same suggestion
+            if (seen.add(types[suggestion] + ':' + bookIds[suggestion] + ':' + texts[suggestion])) {
+                suggestions.add(new Suggestion(texts[suggestion], types[suggestion],
+                    bookIds[suggestion] < 0 ? null : bookIds[suggestion], weights[suggestion]));
+            }
+            offerRange(ranges, range[0], position);
+            offerRange(ranges, position + 1, range[1]);
+        }
+        return suggestions;
+    }
+
+    private long weightOf(int position) {
+        return weights[keySuggestions[position]];
+    }
+
+    private void offerRange(PriorityQueue<int[]> ranges, int from, int to) {
+        if (from < to) {
+            ranges.offer(new int[] { from, to, heaviest(from, to) });
+        }
+    }
+
+    private int heaviest(int from, int to) {
+        int best = -1;
+        for (int lo = from + leaves, hi = to + leaves; lo < hi; lo >>= 1, hi >>= 1) {
+            if ((lo & 1) == 1) {
+                best = heavier(best, tree[lo++]);
+            }
+            if ((hi & 1) == 1) {
+                best = heavier(best, tree[--hi]);
+            }
+        }
+        return best;
+    }
+
+    private int heavier(int a, int b) {
+        if (a < 0) {
+            return b;
+        }
+        if (b < 0) {
+            return a;
+        }
+        return weightOf(b) > weightOf(a) || (weightOf(b) == weightOf(a) && b < a) ? b : a;
+    }
+
+    private int lowerBound(String key) {
+        int lo = 0;
+        int hi = keySuggestions.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(normalized[keySuggestions[mid]], keyOffsets[mid], key, 0) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // same order as String.compareTo, over the texts from the given offsets on
+    private static int compare(String a, int aFrom, String b, int bFrom) {
+        int aLength = a.length() - aFrom;
+        int bLength = b.length() - bFrom;
+        for (int i = 0, n = Math.min(aLength, bLength); i < n; i++) {
+            int difference = a.charAt(aFrom + i) - b.charAt(bFrom + i);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return aLength - bLength;
+    }
+
+    static String normalize(String text) {
+        return text == null ? "" : text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    public static class Builder {
+
+        private final List<Candidate> candidates = new ArrayList<>();
+
+        // a title can be completed from the start of any of its words
+        public Builder addTitle(long bookId, String title, long weight) {
+            String key = normalize(title);
+            if (!key.isEmpty()) {
+                candidates.add(new Candidate(key, title.trim(), TITLE, bookId, weight));
+            }
+            return this;
+        }
+
+        public Builder addAuthor(String author, long weight) {
+            String key = normalize(author);
+            if (!key.isEmpty()) {
+                candidates.add(new Candidate(key, author.trim(), AUTHOR, -1L, weight));
+            }
+            return this;
+        }
+
+        public AutocompleteIndex build() {
+            AutocompleteIndex index = new AutocompleteIndex(candidates);
+            candidates.clear();
+            return index;
+        }
+    }
+
+    private static class Candidate {
+
+        private final String normalized;
+
+        private final String text;
+
+        private final String type;
+
+        private final long bookId;
+
+        private final long weight;
+
+        private final int words;
+
+        Candidate(String normalized, String text, String type, long bookId, long weight) {
+            // the display text is not kept twice when it is already normalized
+            this.normalized = normalized.equals(text) ? text : normalized;
+            this.text = text;
+            this.type = type;
+            this.bookId = bookId;
+            this.weight = weight;
+            int words = 1;
+            if (TITLE.equals(type)) {
+                for (int i = normalized.indexOf(' '); i >= 0; i = normalized.indexOf(' ', i + 1)) {
+                    words++;
+                }
+            }
+            this.words = words;
+        }
+    }
+
+    public static class Suggestion {
+
+        private final String text;
+
+        private final String type;
+
+        private final Long bookId;
+
+        private final long score;
+
+        public Suggestion(String text, String type, Long bookId, long score) {
+            this.text = text;
+            this.type = type;
+            this.bookId = bookId;
+            this.score = score;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public Long getBookId() {
+            return bookId;
+        }
+
+        public long getScore() {
+            return score;
+        }
+    }
+}
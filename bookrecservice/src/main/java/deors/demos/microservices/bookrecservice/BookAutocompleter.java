@@ -0,0 +1,83 @@
+package deors.demos.microservices.bookrecservice;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the current autocomplete index and rebuilds it in the background when a title or an
+ * author in the catalog has changed. Popularity updates alone, which arrive every few seconds,
+ * only refresh the ranking once per reweight period. Queries always run against a complete
+ * immutable index, the previous one until the rebuild is done.
+ */
+@Component
+public class BookAutocompleter {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookAutocompleter.class);
+
+    @Autowired
+    private BookCatalog bookCatalog;
+
+    @Value("${bookrec.autocomplete.reweightMillis:600000}")
+    private long reweightMillis = 600_000L;
+
+    private volatile AutocompleteIndex index = new AutocompleteIndex.Builder().build();
+
+    private final AtomicLong textVersion = new AtomicLong();
+
+    private volatile long builtVersion = -1L;
+
+    private volatile long builtMillis;
+
+    public List<AutocompleteIndex.Suggestion> suggest(String prefix, int count) {
+        return index.suggest(prefix, count);
+    }
+
+    @EventListener
+    public void onBookChanged(BookChangedEvent event) {
+        Book previous = event.getPrevious();
+        Book current = event.getCurrent();
+        if (previous == null || current == null
+                || !Objects.equals(previous.getTitle(), current.getTitle())
+                || !Objects.equals(previous.getAuthor(), current.getAuthor())) {
+            textVersion.incrementAndGet();
+        }
+    }
+
+    @Scheduled(initialDelay = 0L, fixedDelayString = "${bookrec.autocomplete.rebuildMillis:10000}")
+    public void rebuildIfChanged() {
+        if (builtVersion != textVersion.get() || System.currentTimeMillis() - builtMillis >= reweightMillis) {
+            rebuild();
+        }
+    }
+
+    public void rebuild() {
+        long start = System.nanoTime();
+        long version = textVersion.get();
+        AutocompleteIndex.Builder builder = new AutocompleteIndex.Builder();
+        Map<String, Long> authorWeights = new HashMap<>();
+        bookCatalog.forEach(book -> {
+            long weight = 1L + Math.max(0L, book.getPopularity());
+            builder.addTitle(book.getId(), book.getTitle(), weight);
+            if (book.getAuthor() != null) {
+                authorWeights.merge(book.getAuthor().trim(), weight, Long::sum);
+            }
+        });
+        authorWeights.forEach(builder::addAuthor);
+        index = builder.build();
+        builtVersion = version;
+        builtMillis = System.currentTimeMillis();
+        logger.debug("autocomplete index rebuilt with {} keys in {} ms",
+            index.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,139 @@
+package deors.demos.microservices.bookrecservice;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import deors.demos.microservices.common.ServerTimings;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * In-memory snapshot of the book catalog. Entries are detached copies that are never
+ * mutated once published: updates replace the entry for the affected id, so readers
+ * always see a consistent book without going to the database.
+ */
+@Component
+public class BookCatalog {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookCatalog.class);
+
+    private final BookRepository bookRepository;
+
+    private final BookIdIndex bookIdIndex;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Map<Long, Book> books = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    private final AtomicLong version = new AtomicLong();
+
+    private volatile long lastUpdateMillis = System.currentTimeMillis();
+
+    public BookCatalog(BookRepository bookRepository, BookIdIndex bookIdIndex,
+            ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry) {
+        this.bookRepository = bookRepository;
+        this.bookIdIndex = bookIdIndex;
+        this.eventPublisher = eventPublisher;
+        this.hits = Counter.builder("bookrec.catalog.requests").tag("result", "hit")
+            .description("Catalog snapshot lookups, by result")
+            .register(meterRegistry);
+        this.misses = Counter.builder("bookrec.catalog.requests").tag("result", "miss")
+            .description("Catalog snapshot lookups, by result")
+            .register(meterRegistry);
+        Gauge.builder("bookrec.catalog.size", books, Map::size)
+            .description("Number of books in the catalog snapshot")
+            .register(meterRegistry);
+        Gauge.builder("bookrec.catalog.staleness", this, BookCatalog::getStalenessSeconds)
+            .description("Seconds since the catalog snapshot last applied a change")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void load() {
+        books.clear();
+        bookRepository.findAll().forEach(book -> books.put(book.getId(), snapshotOf(book)));
+        bookIdIndex.replaceAll(books.keySet().stream().mapToLong(Long::longValue).toArray());
+        changed();
+        logger.info("book catalog snapshot loaded with {} entries", books.size());
+    }
+
+    public Optional<Book> get(long id) {
+        Book book = books.get(id);
+        if (book != null) {
+            hits.increment();
+            return Optional.of(book);
+        }
+        misses.increment();
+        Optional<Book> loaded = ServerTimings.current().time("db", () -> bookRepository.findById(id));
+        if (loaded.isPresent()) {
+            return Optional.of(put(loaded.get()));
+        }
+        remove(id);
+        return Optional.empty();
+    }
+
+    public Optional<Book> getIfPresent(long id) {
+        return Optional.ofNullable(books.get(id));
+    }
+
+    public Book put(Book book) {
+        Book snapshot = snapshotOf(book);
+        Book previous = books.put(snapshot.getId(), snapshot);
+        bookIdIndex.add(snapshot.getId());
+        changed();
+        eventPublisher.publishEvent(new BookChangedEvent(previous, snapshot));
+        return snapshot;
+    }
+
+    public void remove(long id) {
+        Book previous = books.remove(id);
+        bookIdIndex.remove(id);
+        changed();
+        if (previous != null) {
+            eventPublisher.publishEvent(new BookChangedEvent(previous, null));
+        }
+    }
+
+    public void forEach(Consumer<Book> action) {
+        books.values().forEach(action);
+    }
+
+    public int size() {
+        return books.size();
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    public double getStalenessSeconds() {
+        return (System.currentTimeMillis() - lastUpdateMillis) / 1000.0;
+    }
+
+    private void changed() {
+        version.incrementAndGet();
+        lastUpdateMillis = System.currentTimeMillis();
+    }
+
+    static Book snapshotOf(Book book) {
+        Book snapshot = new Book(book.getId(), book.getTitle(), book.getAuthor());
+        snapshot.setPopularity(book.getPopularity());
+        return snapshot;
+    }
+}
@@ -0,0 +1,25 @@
+package deors.demos.microservices.bookrecservice;
+
+/**
+ * Published by the catalog snapshot whenever a book is added, replaced or removed.
+ * The previous book is null for additions and the current book is null for removals.
+ */
+public class BookChangedEvent {
+
+    private final Book previous;
+
+    private final Book current;
+
+    public BookChangedEvent(Book previous, Book current) {
+        this.previous = previous;
+        this.current = current;
+    }
+
+    public Book getPrevious() {
+        return previous;
+    }
+
+    public Book getCurrent() {
+        return current;
+    }
+}
@@ -1,17 +1,118 @@
 package deors.demos.microservices.bookrecservice;
 
+import java.util.List;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.accept.ContentNegotiationManager;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import deors.demos.microservices.common.ServerTimings;
 
 @RestController
 public class BookController {
 
     @Autowired
-    private BookRepository bookRepository;
+    private BookRecommender bookRecommender;
+
+    @Autowired
+    private BookCatalog bookCatalog;
+
+    @Autowired
+    private PopularityCounter popularityCounter;
+
+    @Autowired
+    private BookSimilarityIndex bookSimilarityIndex;
+
+    @Autowired
+    private BookAutocompleter bookAutocompleter;
+
+    @Autowired
+    private BookJsonCache bookJsonCache;
+
+    @Autowired
+    private ContentNegotiationManager contentNegotiationManager;
+
+    @Value("${bookrec.maxCount:100}")
+    private int maxCount;
 
     @RequestMapping("/bookrec")
     public Book getBookRecommendation() {
-        return bookRepository.getBooksRandomOrder().get(0);
+        return ServerTimings.current().time("recommend", () -> bookRecommender.recommend())
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "the book catalog is empty"));
+    }
+
+    @RequestMapping(path = "/bookrec", params = "count")
+    public List<Book> getBookRecommendations(@RequestParam int count) {
+        if (count < 1 || count > maxCount) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "count must be between 1 and " + maxCount);
+        }
+        return ServerTimings.current().time("recommend", () -> bookRecommender.recommend(count));
+    }
+
+    @GetMapping("/bookrec/{id}")
+    public ResponseEntity<Book> getBook(@PathVariable long id, NativeWebRequest request)
+            throws HttpMediaTypeNotAcceptableException {
+        Book book = ServerTimings.current().time("catalog", () -> bookCatalog.get(id))
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "book " + id + " not found"));
+        // a matching If-None-Match is answered with 304 before anything is written
+        String etag = bookJsonCache.get(book).getETag();
+        if (isCbor(request)) {
+            // a strong validator must tell the representations apart
+            etag = etag.substring(0, etag.length() - 1) + "-cbor\"";
+        }
+        return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT).body(book);
+    }
+
+    // the same choice content negotiation makes, where JSON wins unless CBOR is preferred
+    private boolean isCbor(NativeWebRequest request) throws HttpMediaTypeNotAcceptableException {
+        for (MediaType mediaType : contentNegotiationManager.resolveMediaTypes(request)) {
+            if (mediaType.includes(MediaType.APPLICATION_JSON)) {
+                return false;
+            }
+            if (mediaType.includes(MediaType.APPLICATION_CBOR)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @RequestMapping("/bookrec/similar/{id}")
+    public List<Book> getSimilarBooks(@PathVariable long id, @RequestParam(defaultValue = "10") int count) {
+        if (count < 1 || count > maxCount) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "count must be between 1 and " + maxCount);
+        }
+        return bookSimilarityIndex.similar(id, count)
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "book " + id + " not found"));
+    }
+
+    @RequestMapping("/bookrec/autocomplete")
+    public List<AutocompleteIndex.Suggestion> getSuggestions(
+            @RequestParam String prefix, @RequestParam(defaultValue = "10") int count) {
+        if (count < 1 || count > maxCount) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "count must be between 1 and " + maxCount);
+        }
+        return bookAutocompleter.suggest(prefix, count);
+    }
+
+    @PostMapping("/bookrec/{id}/accept")
+    public ResponseEntity<Void> acceptBookRecommendation(@PathVariable long id) {
+        if (bookCatalog.getIfPresent(id).isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "book " + id + " not found");
+        }
+        popularityCounter.accept(id);
+        return ResponseEntity.accepted().build();
     }
 }
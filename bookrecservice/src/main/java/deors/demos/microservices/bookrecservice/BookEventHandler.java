@@ -0,0 +1,31 @@
+package deors.demos.microservices.bookrecservice;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.rest.core.annotation.HandleAfterCreate;
+import org.springframework.data.rest.core.annotation.HandleAfterDelete;
+import org.springframework.data.rest.core.annotation.HandleAfterSave;
+import org.springframework.data.rest.core.annotation.RepositoryEventHandler;
+import org.springframework.stereotype.Component;
+
+@Component
+@RepositoryEventHandler
+public class BookEventHandler {
+
+    @Autowired
+    private BookCatalog bookCatalog;
+
+    @HandleAfterCreate
+    public void handleAfterCreate(Book book) {
+        bookCatalog.put(book);
+    }
+
+    @HandleAfterSave
+    public void handleAfterSave(Book book) {
+        bookCatalog.put(book);
+    }
+
+    @HandleAfterDelete
+    public void handleAfterDelete(Book book) {
+        bookCatalog.remove(book.getId());
+    }
+}
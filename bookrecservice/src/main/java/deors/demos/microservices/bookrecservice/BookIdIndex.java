@@ -0,0 +1,224 @@
+package deors.demos.microservices.bookrecservice;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.StampedLock;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Dense array of the live book ids, so a uniformly random id can be picked in O(1)
+ * without touching the database. A primitive open-addressing table maps each id to its
+ * slot in the dense array, which allows O(1) removal by moving the last id into the hole.
+ */
+@Component
+public class BookIdIndex {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final StampedLock lock = new StampedLock();
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+
+    private int size;
+
+    // linear probing table: keys are book ids, values are (dense position + 1), 0 means empty slot
+    private long[] slotKeys = new long[INITIAL_CAPACITY * 2];
+
+    private int[] slotValues = new int[INITIAL_CAPACITY * 2];
+
+    public OptionalLong randomId() {
+        long stamp = lock.tryOptimisticRead();
+        long[] currentIds = ids;
+        int currentSize = size;
+        long id = 0L;
+        if (currentSize > 0) {
+            int position = ThreadLocalRandom.current().nextInt(currentSize);
+            // the arrays may be swapped under an optimistic read, validation below discards that case
+            id = position < currentIds.length ? currentIds[position] : 0L;
+        }
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                currentSize = size;
+                id = currentSize == 0 ? 0L : ids[ThreadLocalRandom.current().nextInt(currentSize)];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return currentSize == 0 ? OptionalLong.empty() : OptionalLong.of(id);
+    }
+
+    // Floyd's sampling: count distinct positions drawn with O(count) time and memory
+    public long[] randomIds(int count) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long stamp = lock.readLock();
+        long[] sample;
+        try {
+            int k = Math.min(Math.max(count, 0), size);
+            sample = new long[k];
+            if (k == size) {
+                System.arraycopy(ids, 0, sample, 0, k);
+            } else {
+                Set<Integer> chosen = new HashSet<>(k * 2);
+                int i = 0;
+                for (int j = size - k; j < size; j++) {
+                    int position = random.nextInt(j + 1);
+                    if (!chosen.add(position)) {
+                        position = j;
+                        chosen.add(j);
+                    }
+                    sample[i++] = ids[position];
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        // the selection is uniform but its order is not, so shuffle before handing it out
+        for (int i = sample.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long swap = sample[i];
+            sample[i] = sample[j];
+            sample[j] = swap;
+        }
+        return sample;
+    }
+
+    public int size() {
+        long stamp = lock.tryOptimisticRead();
+        int currentSize = size;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                currentSize = size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return currentSize;
+    }
+
+    public boolean contains(long id) {
+        long stamp = lock.readLock();
+        try {
+            return slotValues[findSlot(id)] != 0;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean add(long id) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = findSlot(id);
+            if (slotValues[slot] != 0) {
+                return false;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+            slotKeys[slot] = id;
+            slotValues[slot] = size;
+            if (size * 2 > slotKeys.length) {
+                rehash(slotKeys.length * 2);
+            }
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public boolean remove(long id) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = findSlot(id);
+            if (slotValues[slot] == 0) {
+                return false;
+            }
+            int position = slotValues[slot] - 1;
+            long lastId = ids[--size];
+            if (position != size) {
+                ids[position] = lastId;
+                slotValues[findSlot(lastId)] = position + 1;
+            }
+            deleteSlot(slot);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void replaceAll(long[] newIds) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < newIds.length) {
+            capacity *= 2;
+        }
+        long stamp = lock.writeLock();
+        try {
+            ids = new long[capacity];
+            size = 0;
+            slotKeys = new long[capacity * 2];
+            slotValues = new int[capacity * 2];
+            for (long id : newIds) {
+                int slot = findSlot(id);
+                if (slotValues[slot] == 0) {
+                    ids[size++] = id;
+                    slotKeys[slot] = id;
+                    slotValues[slot] = size;
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private int findSlot(long id) {
+        int mask = slotKeys.length - 1;
+        int slot = hash(id) & mask;
+        while (slotValues[slot] != 0 && slotKeys[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // backward shift deletion keeps probe sequences intact without tombstones
+    private void deleteSlot(int slot) {
+        int mask = slotKeys.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (slotValues[next] != 0) {
+            int home = hash(slotKeys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                slotKeys[hole] = slotKeys[next];
+                slotValues[hole] = slotValues[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        slotKeys[hole] = 0L;
+        slotValues[hole] = 0;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = slotKeys;
+        int[] oldValues = slotValues;
+        slotKeys = new long[newCapacity];
+        slotValues = new int[newCapacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != 0) {
+                int slot = findSlot(oldKeys[i]);
+                slotKeys[slot] = oldKeys[i];
+                slotValues[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,34 @@
+package deors.demos.microservices.bookrecservice;
+
+import java.util.OptionalLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class BookIdSelector {
+
+    @Autowired
+    private BookIdIndex bookIdIndex;
+
+    @Autowired
+    private WeightedBookSampler weightedBookSampler;
+
+    @Value("${bookrec.selectionMode:uniform}")
+    private SelectionMode selectionMode;
+
+    public SelectionMode getSelectionMode() {
+        return selectionMode;
+    }
+
+    public OptionalLong randomId() {
+        if (selectionMode == SelectionMode.WEIGHTED) {
+            OptionalLong id = weightedBookSampler.randomId();
+            if (id.isPresent()) {
+                return id;
+            }
+        }
+        return bookIdIndex.randomId();
+    }
+}
@@ -0,0 +1,188 @@
+package deors.demos.microservices.bookrecservice;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Streams books from CSV or NDJSON into the database. Rows are read one at a time and
+ * persisted in fixed-size chunks, each in its own transaction and with the persistence
+ * context cleared afterwards, so memory use does not depend on the size of the input.
+ */
+@Service
+public class BookIngestionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookIngestionService.class);
+
+    private static final int MAX_LOGGED_REJECTIONS = 10;
+
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private BookCatalog bookCatalog;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${bookrec.ingest.chunkSize:1000}")
+    private int chunkSize;
+
+    @Value("${bookrec.ingest.progressEvery:100000}")
+    private long progressEvery;
+
+    public IngestionReport ingest(InputStream input, Format format) throws IOException {
+        Counter ingestedRows = meterRegistry.counter("bookrec.ingest.rows");
+        long start = System.currentTimeMillis();
+        long rows = 0L;
+        long rejected = 0L;
+        long lineNumber = 0L;
+        List<Book> chunk = new ArrayList<>(chunkSize);
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || (lineNumber == 1L && format == Format.CSV && line.startsWith("title,"))) {
+                continue;
+            }
+            try {
+                chunk.add(format == Format.CSV ? parseCsv(line) : parseNdjson(line));
+            } catch (IllegalArgumentException | IOException e) {
+                if (rejected++ < MAX_LOGGED_REJECTIONS) {
+                    logger.warn("rejected line {} of the catalog import: {}", lineNumber, e.getMessage());
+                }
+                continue;
+            }
+            if (chunk.size() == chunkSize) {
+                rows += persist(chunk, ingestedRows);
+                if (rows % progressEvery < chunkSize) {
+                    logProgress(rows, start);
+                }
+            }
+        }
+        rows += persist(chunk, ingestedRows);
+
+        IngestionReport report = new IngestionReport(rows, rejected, System.currentTimeMillis() - start);
+        logger.info("catalog import completed: {}", report);
+        return report;
+    }
+
+    private int persist(List<Book> chunk, Counter ingestedRows) {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            chunk.forEach(entityManager::persist);
+            entityManager.flush();
+            entityManager.clear();
+        });
+        chunk.forEach(bookCatalog::put);
+        int persisted = chunk.size();
+        ingestedRows.increment(persisted);
+        chunk.clear();
+        return persisted;
+    }
+
+    private void logProgress(long rows, long start) {
+        long elapsed = Math.max(1L, System.currentTimeMillis() - start);
+        logger.info("catalog import in progress: {} rows, {} rows/s", rows, rows * 1000L / elapsed);
+    }
+
+    private Book parseNdjson(String line) throws IOException {
+        JsonNode node = objectMapper.readTree(line);
+        if (node == null || !node.isObject()) {
+            throw new IllegalArgumentException("not a JSON object");
+        }
+        return newBook(node.path("title").asText(null), node.path("author").asText(null),
+            node.path("popularity").asLong(0L));
+    }
+
+    private Book parseCsv(String line) {
+        List<String> fields = splitCsv(line);
+        if (fields.size() < 2 || fields.size() > 3) {
+            throw new IllegalArgumentException("expected title,author[,popularity] but found " + fields.size() + " fields");
+        }
+        long popularity = 0L;
+        if (fields.size() == 3 && !fields.get(2).isBlank()) {
+            try {
+                popularity = Long.parseLong(fields.get(2).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("popularity is not a number: " + fields.get(2));
+            }
+        }
+        return newBook(fields.get(0), fields.get(1), popularity);
+    }
+
+    private static Book newBook(String title, String author, long popularity) {
+        if (title == null || title.isBlank() || author == null || author.isBlank()) {
+            throw new IllegalArgumentException("title and author are required");
+        }
+        Book book = new Book(null, title, author);
+        book.setPopularity(popularity);
+        return book;
+    }
+
+    // RFC 4180 fields on a single line: optional double quotes, with "" as an escaped quote
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(3);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,88 @@
+package deors.demos.microservices.bookrecservice;
+
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Serialized JSON and strong ETag of every catalog snapshot that has been written out.
+ * Snapshots are immutable and replaced on every change, so an entry is valid for as long
+ * as it belongs to the very same snapshot instance the catalog holds.
+ */
+@Component
+public class BookJsonCache {
+
+    private final ObjectMapper objectMapper;
+
+    private final BookCatalog bookCatalog;
+
+    private final Map<Long, CachedJson> entries = new ConcurrentHashMap<>();
+
+    public BookJsonCache(ObjectMapper objectMapper, BookCatalog bookCatalog) {
+        this.objectMapper = objectMapper;
+        this.bookCatalog = bookCatalog;
+    }
+
+    public CachedJson get(Book book) {
+        CachedJson cached = entries.get(book.getId());
+        if (cached != null && cached.book == book) {
+            return cached;
+        }
+        CachedJson serialized = serialize(book);
+        // books that are not the current catalog snapshot, e.g. from the repository fallback, are not kept
+        if (bookCatalog.getIfPresent(book.getId()).orElse(null) == book) {
+            entries.put(book.getId(), serialized);
+        }
+        return serialized;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @EventListener
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.getPrevious() != null) {
+            entries.remove(event.getPrevious().getId());
+        }
+    }
+
+    private CachedJson serialize(Book book) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(book);
+            return new CachedJson(book, json, '"' + DigestUtils.md5DigestAsHex(json) + '"');
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static class CachedJson {
+
+        private final Book book;
+
+        private final byte[] json;
+
+        private final String etag;
+
+        CachedJson(Book book, byte[] json, String etag) {
+            this.book = book;
+            this.json = json;
+            this.etag = etag;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        public String getETag() {
+            return etag;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package deors.demos.microservices.bookrecservice;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import deors.demos.microservices.common.ServerTimings;
+
+@Service
+public class BookRecommender {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookIdIndex bookIdIndex;
+
+    @Autowired
+    private BookCatalog bookCatalog;
+
+    @Autowired
+    private BookIdSelector bookIdSelector;
+
+    @Autowired
+    private RecommendationBuffer recommendationBuffer;
+
+    public Optional<Book> recommend() {
+        Optional<Book> buffered = recommendationBuffer.take();
+        if (buffered.isPresent()) {
+            return buffered;
+        }
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            OptionalLong id = bookIdSelector.randomId();
+            if (id.isEmpty()) {
+                break;
+            }
+            // the catalog drops ids whose row was removed behind its back, e.g. outside the REST resource
+            Optional<Book> book = bookCatalog.get(id.getAsLong());
+            if (book.isPresent()) {
+                return book;
+            }
+        }
+        // index empty or out of sync, fall back to the full shuffle
+        List<Book> books = ServerTimings.current().time("db", bookRepository::getBooksRandomOrder);
+        return books.isEmpty() ? Optional.empty() : Optional.of(books.get(0));
+    }
+
+    public List<Book> recommend(int count) {
+        Set<Long> ids = new LinkedHashSet<>();
+        if (bookIdSelector.getSelectionMode() == SelectionMode.WEIGHTED) {
+            // weighted draws repeat popular books, so stop after a bounded number of draws
+            for (int draws = 0; ids.size() < count && draws < count * 4; draws++) {
+                OptionalLong id = bookIdSelector.randomId();
+                if (id.isEmpty()) {
+                    break;
+                }
+                ids.add(id.getAsLong());
+            }
+        }
+        if (ids.size() < count) {
+            for (long id : bookIdIndex.randomIds(count)) {
+                if (ids.size() == count) {
+                    break;
+                }
+                ids.add(id);
+            }
+        }
+        List<Book> books = new ArrayList<>(ids.size());
+        for (long id : ids) {
+            bookCatalog.get(id).ifPresent(books::add);
+        }
+        return books;
+    }
+}
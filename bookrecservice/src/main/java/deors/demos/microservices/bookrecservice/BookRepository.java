@@ -2,13 +2,31 @@ package deors.demos.microservices.bookrecservice;
 
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.data.rest.core.annotation.RestResource;
+import org.springframework.transaction.annotation.Transactional;
 
 @RepositoryRestResource
 public interface BookRepository extends CrudRepository<Book, Long> {
 
     @Query("select b from Book b order by RAND()")
     List<Book> getBooksRandomOrder();
+
+    @Query("select b.id from Book b")
+    List<Long> getBookIds();
+
+    @RestResource(exported = false)
+    @Query("select b from Book b where b.id > :afterId order by b.id")
+    List<Book> findPageAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @RestResource(exported = false)
+    @Query("update Book b set b.popularity = b.popularity + :delta where b.id = :id")
+    int incrementPopularity(@Param("id") Long id, @Param("delta") long delta);
 }
@@ -0,0 +1,143 @@
+package deors.demos.microservices.bookrecservice;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Inverted index from authors and title tokens to book ids. Related books are scored by
+ * a shared author plus the inverse document frequency of the shared title tokens, so rare
+ * words weigh more than common ones. Tokens shared by too many books are skipped, which
+ * keeps every lookup bounded whatever the catalog size.
+ */
+@Component
+public class BookSimilarityIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookSimilarityIndex.class);
+
+    private static final Set<String> STOP_WORDS = Set.of(
+        "a", "an", "and", "at", "by", "for", "from", "in", "of", "on", "or", "the", "to", "with");
+
+    private static final String AUTHOR_PREFIX = "author:";
+
+    private final BookCatalog bookCatalog;
+
+    private final Map<String, Set<Long>> postings = new ConcurrentHashMap<>();
+
+    @Value("${bookrec.similar.authorWeight:3.0}")
+    private double authorWeight = 3.0;
+
+    @Value("${bookrec.similar.maxPostings:10000}")
+    private int maxPostings = 10_000;
+
+    public BookSimilarityIndex(BookCatalog bookCatalog) {
+        this.bookCatalog = bookCatalog;
+    }
+
+    @PostConstruct
+    public void build() {
+        postings.clear();
+        bookCatalog.forEach(book -> index(book.getId(), termsOf(book)));
+        logger.info("book similarity index built with {} terms", postings.size());
+    }
+
+    @EventListener
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.getPrevious() != null) {
+            unindex(event.getPrevious().getId(), termsOf(event.getPrevious()));
+        }
+        if (event.getCurrent() != null) {
+            index(event.getCurrent().getId(), termsOf(event.getCurrent()));
+        }
+    }
+
+    public Optional<List<Book>> similar(long id, int count) {
+        Optional<Book> book = bookCatalog.getIfPresent(id);
+        if (book.isEmpty()) {
+            return Optional.empty();
+        }
+        double total = Math.max(1, bookCatalog.size());
+        Map<Long, Double> scores = new HashMap<>();
+        for (String term : termsOf(book.get())) {
+            Set<Long> ids = postings.get(term);
+            if (ids == null || ids.size() > maxPostings) {
+                continue;
+            }
+            double weight = term.startsWith(AUTHOR_PREFIX) ? authorWeight : Math.log(1.0 + total / ids.size());
+            for (Long other : ids) {
+                if (other != id) {
+                    scores.merge(other, weight, Double::sum);
+                }
+            }
+        }
+
+        // keep only the best count candidates, ties broken by lower id for stable results
+        Comparator<Map.Entry<Long, Double>> byScore = Map.Entry.<Long, Double>comparingByValue()
+            .thenComparing(Map.Entry.<Long, Double>comparingByKey().reversed());
+        PriorityQueue<Map.Entry<Long, Double>> best = new PriorityQueue<>(count + 1, byScore);
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            best.offer(entry);
+            if (best.size() > count) {
+                best.poll();
+            }
+        }
+        List<Book> similar = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            bookCatalog.getIfPresent(best.poll().getKey()).ifPresent(similar::add);
+        }
+        Collections.reverse(similar);
+        return Optional.of(similar);
+    }
+
+    private void index(long id, Set<String> terms) {
+        for (String term : terms) {
+            // added while the entry is locked, as an unindex emptying the set would drop it otherwise
+            postings.compute(term, (key, ids) -> {
+                Set<Long> indexed = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+                indexed.add(id);
+                return indexed;
+            });
+        }
+    }
+
+    private void unindex(long id, Set<String> terms) {
+        for (String term : terms) {
+            postings.computeIfPresent(term, (key, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    static Set<String> termsOf(Book book) {
+        Set<String> terms = new HashSet<>();
+        if (book.getAuthor() != null && !book.getAuthor().isBlank()) {
+            terms.add(AUTHOR_PREFIX + book.getAuthor().trim().toLowerCase(Locale.ROOT));
+        }
+        if (book.getTitle() != null) {
+            for (String token : book.getTitle().toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+                if (token.length() > 1 && !STOP_WORDS.contains(token)) {
+                    terms.add(token);
+                }
+            }
+        }
+        return terms;
+    }
+}
@@ -2,12 +2,25 @@ package deors.demos.microservices.bookrecservice;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
 
-@SpringBootApplication
+@SpringBootApplication(scanBasePackages = { "deors.demos.microservices.bookrecservice", "deors.demos.microservices.common" })
 @org.springframework.cloud.client.discovery.EnableDiscoveryClient
+@org.springframework.scheduling.annotation.EnableScheduling
 public class BookrecserviceApplication {
 
     public static void main(String[] args) {
         SpringApplication.run(BookrecserviceApplication.class, args);
     }
+
+    // Spring Data REST only emits ETags for versioned entities, so derive them from the response body
+    @Bean
+    FilterRegistrationBean<ShallowEtagHeaderFilter> booksEtagFilter() {
+        FilterRegistrationBean<ShallowEtagHeaderFilter> registration =
+            new FilterRegistrationBean<>(new ShallowEtagHeaderFilter());
+        registration.addUrlPatterns("/books/*");
+        return registration;
+    }
 }
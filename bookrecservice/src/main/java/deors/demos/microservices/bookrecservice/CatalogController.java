@@ -0,0 +1,74 @@
+package deors.demos.microservices.bookrecservice;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+@RestController
+public class CatalogController {
+
+    static final String TEXT_CSV = "text/csv";
+
+    static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    @Autowired
+    private BookIngestionService bookIngestionService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${bookrec.export.pageSize:1000}")
+    private int exportPageSize;
+
+    @PostMapping(path = "/catalog/import", consumes = TEXT_CSV)
+    public IngestionReport importCsv(InputStream body) throws IOException {
+        return bookIngestionService.ingest(body, BookIngestionService.Format.CSV);
+    }
+
+    @PostMapping(path = "/catalog/import", consumes = APPLICATION_NDJSON)
+    public IngestionReport importNdjson(InputStream body) throws IOException {
+        return bookIngestionService.ingest(body, BookIngestionService.Format.NDJSON);
+    }
+
+    // keyset pagination on id: every page is an index range scan, however deep into the catalog,
+    // and only one page of books is held in memory while it is written out
+    @GetMapping(path = "/catalog/export", produces = APPLICATION_NDJSON)
+    public void exportNdjson(HttpServletResponse response) throws IOException {
+        response.setContentType(APPLICATION_NDJSON);
+        response.setCharacterEncoding("UTF-8");
+        // flushed once per page below, not after every book
+        ObjectWriter writer = objectMapper.writerFor(Book.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            // lines are delimited explicitly, instead of the default space between root values
+            generator.setRootValueSeparator(null);
+            long afterId = Long.MIN_VALUE;
+            List<Book> page;
+            do {
+                page = bookRepository.findPageAfter(afterId, PageRequest.ofSize(exportPageSize));
+                for (Book book : page) {
+                    writer.writeValue(generator, book);
+                    generator.writeRaw('\n');
+                    afterId = book.getId();
+                }
+                generator.flush();
+            } while (page.size() == exportPageSize);
+        }
+    }
+}
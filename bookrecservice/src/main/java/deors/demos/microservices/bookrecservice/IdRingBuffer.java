@@ -0,0 +1,59 @@
+package deors.demos.microservices.bookrecservice;
+
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded single-producer, multiple-consumer ring of ids. Consumers claim a slot with a CAS
+ * on the head and never block; the producer publishes a slot by advancing the tail.
+ * A consumer reads its slot before claiming it, and the producer only reuses a slot once
+ * the head has moved past it, so a successful claim always returns a published id.
+ */
+public class IdRingBuffer {
+
+    private final long[] slots;
+
+    private final int mask;
+
+    private final AtomicLong head = new AtomicLong();
+
+    private final AtomicLong tail = new AtomicLong();
+
+    public IdRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        slots = new long[size];
+        mask = size - 1;
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    public int size() {
+        return (int) Math.max(0L, tail.get() - head.get());
+    }
+
+    public OptionalLong poll() {
+        while (true) {
+            long currentHead = head.get();
+            if (currentHead >= tail.get()) {
+                return OptionalLong.empty();
+            }
+            long id = slots[(int) (currentHead & mask)];
+            if (head.compareAndSet(currentHead, currentHead + 1)) {
+                return OptionalLong.of(id);
+            }
+        }
+    }
+
+    // must only be called from a single producer thread at a time
+    public boolean offer(long id) {
+        long currentTail = tail.get();
+        if (currentTail - head.get() >= slots.length) {
+            return false;
+        }
+        slots[(int) (currentTail & mask)] = id;
+        tail.set(currentTail + 1);
+        return true;
+    }
+}
@@ -0,0 +1,38 @@
+package deors.demos.microservices.bookrecservice;
+
+public class IngestionReport {
+
+    private final long rows;
+
+    private final long rejected;
+
+    private final long elapsedMillis;
+
+    public IngestionReport(long rows, long rejected, long elapsedMillis) {
+        this.rows = rows;
+        this.rejected = rejected;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedMillis == 0L ? rows : rows * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "IngestionReport [rows=" + rows + ", rejected=" + rejected
+            + ", elapsedMillis=" + elapsedMillis + ", rowsPerSecond=" + Math.round(getRowsPerSecond()) + "]";
+    }
+}
@@ -0,0 +1,48 @@
+package deors.demos.microservices.bookrecservice;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Delays recommendation requests by a configurable amount, to reproduce a slow
+ * bookrecservice when load testing the edge. Occasional spikes, affecting a percentage
+ * of the requests, reproduce a long latency tail. Only available with the loadtest profile,
+ * and disabled even then unless a latency is set.
+ */
+@Component
+@Profile("loadtest")
+public class LatencyInjectionInterceptor implements HandlerInterceptor {
+
+    @Value("${bookrec.injectedLatencyMillis:0}")
+    private long latencyMillis;
+
+    @Value("${bookrec.injectedLatencyJitterMillis:0}")
+    private long jitterMillis;
+
+    @Value("${bookrec.injectedLatencySpikeMillis:0}")
+    private long spikeMillis;
+
+    @Value("${bookrec.injectedLatencySpikePercent:0}")
+    private double spikePercent;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = latencyMillis + (jitterMillis > 0 ? random.nextLong(jitterMillis + 1) : 0);
+        if (spikeMillis > 0 && random.nextDouble() * 100 < spikePercent) {
+            delay += spikeMillis;
+        }
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,68 @@
+package deors.demos.microservices.bookrecservice;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts accepted recommendations in memory and flushes them to the database in the background,
+ * one update per book and flush interval, however many times the book was accepted meanwhile.
+ * Counts that could not be flushed are kept for the next flush.
+ */
+@Component
+public class PopularityCounter {
+
+    private static final Logger logger = LoggerFactory.getLogger(PopularityCounter.class);
+
+    private final Map<Long, LongAdder> pending = new ConcurrentHashMap<>();
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookCatalog bookCatalog;
+
+    public void accept(long id) {
+        add(id, 1L);
+    }
+
+    @Scheduled(fixedDelayString = "${bookrec.popularityFlushMillis:5000}")
+    public void flush() {
+        for (Long id : pending.keySet()) {
+            // later increments go to a new adder instead of being reset along with this one
+            LongAdder taken = pending.remove(id);
+            long delta = taken == null ? 0L : taken.sum();
+            if (delta == 0L) {
+                continue;
+            }
+            try {
+                if (bookRepository.incrementPopularity(id, delta) > 0) {
+                    bookCatalog.getIfPresent(id).ifPresent(book -> {
+                        Book updated = BookCatalog.snapshotOf(book);
+                        updated.setPopularity(book.getPopularity() + delta);
+                        bookCatalog.put(updated);
+                    });
+                }
+            } catch (DataAccessException e) {
+                logger.warn("popularity of book {} could not be flushed, {} accepts kept for the next flush", id, delta, e);
+                add(id, delta);
+            }
+        }
+    }
+
+    // counted while the entry is locked, so that no increment lands on an adder already taken by a flush
+    private void add(long id, long delta) {
+        pending.compute(id, (key, adder) -> {
+            LongAdder counted = adder == null ? new LongAdder() : adder;
+            counted.add(delta);
+            return counted;
+        });
+    }
+}
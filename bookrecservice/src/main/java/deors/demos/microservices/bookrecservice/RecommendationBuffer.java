@@ -0,0 +1,87 @@
+package deors.demos.microservices.bookrecservice;
+
+import java.util.Optional;
+import java.util.OptionalLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Random picks computed ahead of time by a background task, so request threads only have
+ * to claim one from the ring. Ids are buffered rather than books, and resolved against the
+ * catalog when handed out, so a buffered pick never returns a stale or deleted book.
+ */
+@Component
+public class RecommendationBuffer {
+
+    private final BookIdSelector bookIdSelector;
+
+    private final BookCatalog bookCatalog;
+
+    private final IdRingBuffer ring;
+
+    private final boolean enabled;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    private final Timer refillTimer;
+
+    public RecommendationBuffer(BookIdSelector bookIdSelector, BookCatalog bookCatalog, MeterRegistry meterRegistry,
+            @Value("${bookrec.buffer.enabled:true}") boolean enabled,
+            @Value("${bookrec.buffer.capacity:1024}") int capacity) {
+        this.bookIdSelector = bookIdSelector;
+        this.bookCatalog = bookCatalog;
+        this.enabled = enabled;
+        this.ring = new IdRingBuffer(capacity);
+        this.hits = Counter.builder("bookrec.buffer.takes").tag("result", "hit")
+            .description("Recommendations taken from the buffer, by result")
+            .register(meterRegistry);
+        this.misses = Counter.builder("bookrec.buffer.takes").tag("result", "miss")
+            .description("Recommendations taken from the buffer, by result")
+            .register(meterRegistry);
+        this.refillTimer = Timer.builder("bookrec.buffer.refill")
+            .description("Time taken to top up the recommendation buffer")
+            .register(meterRegistry);
+        Gauge.builder("bookrec.buffer.fill", ring, IdRingBuffer::size)
+            .description("Number of pre-computed recommendations in the buffer")
+            .register(meterRegistry);
+    }
+
+    public Optional<Book> take() {
+        if (enabled) {
+            for (OptionalLong id = ring.poll(); id.isPresent(); id = ring.poll()) {
+                Optional<Book> book = bookCatalog.getIfPresent(id.getAsLong());
+                if (book.isPresent()) {
+                    hits.increment();
+                    return book;
+                }
+            }
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    // the scheduler runs this on a single thread, which makes it the only producer of the ring
+    @Scheduled(fixedDelayString = "${bookrec.buffer.refillMillis:50}")
+    public void refill() {
+        if (!enabled || ring.size() > ring.capacity() / 2) {
+            return;
+        }
+        refillTimer.record(() -> {
+            while (ring.size() < ring.capacity()) {
+                OptionalLong id = bookIdSelector.randomId();
+                if (id.isEmpty() || !ring.offer(id.getAsLong())) {
+                    break;
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,92 @@
+package deors.demos.microservices.bookrecservice;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Rejects recommendation requests whose caller has already given up on them, as told by the
+ * deadline header set by the edge service, before any work is done for them. Both headers
+ * are epoch milliseconds, so the clocks of caller and service are expected to be in sync.
+ */
+@Component
+public class RequestDeadlineInterceptor implements HandlerInterceptor {
+
+    public static final String DEADLINE_HEADER = "X-Request-Deadline";
+
+    public static final String SENT_HEADER = "X-Request-Sent";
+
+    private final boolean enabled;
+
+    private final Timer queueTime;
+
+    private final Timer remaining;
+
+    private final Counter accepted;
+
+    private final Counter expired;
+
+    public RequestDeadlineInterceptor(MeterRegistry meterRegistry,
+            @Value("${bookrec.deadline.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+        this.queueTime = Timer.builder("bookrec.deadline.queue")
+            .description("Time from the caller sending a request until it is handled, network and queues included")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.remaining = Timer.builder("bookrec.deadline.remaining")
+            .description("Time left until the deadline of requests when they are handled")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.accepted = Counter.builder("bookrec.deadline.requests")
+            .tag("result", "accepted")
+            .description("Requests with a deadline, by whether it had passed when they were handled")
+            .register(meterRegistry);
+        this.expired = Counter.builder("bookrec.deadline.requests")
+            .tag("result", "expired")
+            .description("Requests with a deadline, by whether it had passed when they were handled")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        long now = System.currentTimeMillis();
+        long sent = parse(request.getHeader(SENT_HEADER));
+        if (sent > 0) {
+            queueTime.record(Math.max(0, now - sent), TimeUnit.MILLISECONDS);
+        }
+        long deadline = parse(request.getHeader(DEADLINE_HEADER));
+        if (!enabled || deadline <= 0) {
+            return true;
+        }
+        if (deadline <= now) {
+            expired.increment();
+            // no body, so that rejecting costs as little as possible
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            return false;
+        }
+        accepted.increment();
+        remaining.record(deadline - now, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    private static long parse(String header) {
+        if (header == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(header);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package deors.demos.microservices.bookrecservice;
+
+public enum SelectionMode {
+
+    UNIFORM,
+
+    WEIGHTED
+}
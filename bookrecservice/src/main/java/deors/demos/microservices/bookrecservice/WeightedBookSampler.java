@@ -0,0 +1,73 @@
+package deors.demos.microservices.bookrecservice;
+
+import java.util.Arrays;
+import java.util.OptionalLong;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Popularity-weighted picks backed by an alias table. The table is rebuilt in the background
+ * whenever the catalog has changed since the last build, so request threads never pay for it.
+ */
+@Component
+public class WeightedBookSampler {
+
+    private static final Logger logger = LoggerFactory.getLogger(WeightedBookSampler.class);
+
+    @Autowired
+    private BookCatalog bookCatalog;
+
+    @Value("${bookrec.selectionMode:uniform}")
+    private SelectionMode selectionMode;
+
+    private volatile AliasTable aliasTable = new AliasTable(new long[0], new double[0]);
+
+    private volatile long builtVersion = -1L;
+
+    public OptionalLong randomId() {
+        AliasTable table = aliasTable;
+        return table.size() == 0 ? OptionalLong.empty() : OptionalLong.of(table.sample(ThreadLocalRandom.current()));
+    }
+
+    @Scheduled(initialDelay = 0L, fixedDelayString = "${bookrec.weightedRebuildMillis:5000}")
+    public void rebuildIfChanged() {
+        if (selectionMode != SelectionMode.WEIGHTED || builtVersion == bookCatalog.getVersion()) {
+            return;
+        }
+        rebuild();
+    }
+
+    public void rebuild() {
+        long start = System.nanoTime();
+        long version = bookCatalog.getVersion();
+        int capacity = bookCatalog.size();
+        long[] ids = new long[capacity];
+        double[] weights = new double[capacity];
+        int[] count = new int[1];
+        bookCatalog.forEach(book -> {
+            // the catalog may grow while it is being walked, changes are picked up on the next build
+            if (count[0] < capacity) {
+                ids[count[0]] = book.getId();
+                weights[count[0]] = weightOf(book);
+                count[0]++;
+            }
+        });
+        long[] builtIds = count[0] == capacity ? ids : Arrays.copyOf(ids, count[0]);
+        double[] builtWeights = count[0] == capacity ? weights : Arrays.copyOf(weights, count[0]);
+        aliasTable = new AliasTable(builtIds, builtWeights);
+        builtVersion = version;
+        logger.debug("weighted sampler rebuilt with {} entries in {} ms",
+            builtIds.length, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // every book keeps a chance to be recommended, popularity only adds to it
+    static double weightOf(Book book) {
+        return 1.0 + Math.max(0L, book.getPopularity());
+    }
+}
@@ -1,10 +1,10 @@
-insert into book(title, author) values ('second foundation', 'isaac asimov')
-insert into book(title, author) values ('speaker for the dead', 'orson scott card')
-insert into book(title, author) values ('the player of games', 'iain m. banks')
-insert into book(title, author) values ('the lord of the rings', 'j.r.r. tolkien')
-insert into book(title, author) values ('the warrior apprentice', 'lois mcmaster bujold')
-insert into book(title, author) values ('blood of elves', 'andrzej sapkowski')
-insert into book(title, author) values ('harry potter and the prisoner of azkaban', 'j.k. rowling')
-insert into book(title, author) values ('2010: odyssey two', 'arthur c. clarke')
-insert into book(title, author) values ('starship troopers', 'robert a. heinlein')
-insert into book(title, author) values ('lady of the lake', 'andrzej sapkowski')
+insert into book(id, title, author, popularity) values (next value for book_seq, 'second foundation', 'isaac asimov', 12)
+insert into book(id, title, author, popularity) values (next value for book_seq, 'speaker for the dead', 'orson scott card', 8)
+insert into book(id, title, author, popularity) values (next value for book_seq, 'the player of games', 'iain m. banks', 5)
+insert into book(id, title, author, popularity) values (next value for book_seq, 'the lord of the rings', 'j.r.r. tolkien', 20)
+insert into book(id, title, author, popularity) values (next value for book_seq, 'the warrior apprentice', 'lois mcmaster bujold', 2)
+insert into book(id, title, author, popularity) values (next value for book_seq, 'blood of elves', 'andrzej sapkowski', 6)
+insert into book(id, title, author, popularity) values (next value for book_seq, 'harry potter and the prisoner of azkaban', 'j.k. rowling', 15)
+insert into book(id, title, author, popularity) values (next value for book_seq, '2010: odyssey two', 'arthur c. clarke', 4)
+insert into book(id, title, author, popularity) values (next value for book_seq, 'starship troopers', 'robert a. heinlein', 3)
+insert into book(id, title, author, popularity) values (next value for book_seq, 'lady of the lake', 'andrzej sapkowski', 5)
@@ -0,0 +1,57 @@
+package deors.demos.microservices.bookrecservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class AliasTableTest {
+
+    @Test
+    public void testWeightedDistribution() {
+
+        AliasTable table = new AliasTable(new long[] { 1L, 2L, 3L }, new double[] { 1.0, 2.0, 7.0 });
+        Random random = new Random(42L);
+
+        int[] counts = new int[4];
+        int draws = 100_000;
+        for (int i = 0; i < draws; i++) {
+            counts[(int) table.sample(random)]++;
+        }
+
+        assertEquals(0.1, counts[1] / (double) draws, 0.01,
+            "the id with weight 1 of 10 should be picked about 10% of the time");
+        assertEquals(0.2, counts[2] / (double) draws, 0.01,
+            "the id with weight 2 of 10 should be picked about 20% of the time");
+        assertEquals(0.7, counts[3] / (double) draws, 0.01,
+            "the id with weight 7 of 10 should be picked about 70% of the time");
+    }
+
+    @Test
+    public void testZeroWeightIsNeverPicked() {
+
+        AliasTable table = new AliasTable(new long[] { 1L, 2L }, new double[] { 0.0, 1.0 });
+        Random random = new Random(42L);
+
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(2L, table.sample(random),
+                "an id with weight 0 should never be picked");
+        }
+    }
+
+    @Test
+    public void testInvalidTables() {
+
+        assertThrows(IllegalArgumentException.class,
+            () -> new AliasTable(new long[] { 1L }, new double[] { 1.0, 2.0 }),
+            "ids and weights of different length should be rejected");
+        assertThrows(IllegalArgumentException.class,
+            () -> new AliasTable(new long[] { 1L }, new double[] { -1.0 }),
+            "negative weights should be rejected");
+        assertThrows(IllegalStateException.class,
+            () -> new AliasTable(new long[0], new double[0]).sample(new Random()),
+            "sampling an empty table should fail");
+    }
+}
@@ -0,0 +1,124 @@
+package deors.demos.microservices.bookrecservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class AutocompleteIndexTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(AutocompleteIndexTest.class);
+
+    private static final String[] WORDS = {
+        "dark", "star", "empire", "night", "river", "stone", "city", "dream", "fire", "shadow",
+        "king", "queen", "war", "peace", "sea", "sky", "garden", "machine", "ghost", "winter" };
+
+    @Test
+    public void testSuggestByPopularity() {
+
+        AutocompleteIndex index = new AutocompleteIndex.Builder()
+            .addTitle(1L, "Foundation", 5L)
+            .addTitle(2L, "Foundation and Empire", 9L)
+            .addTitle(3L, "Second Foundation", 7L)
+            .addTitle(4L, "Forward the Foundation", 1L)
+            .addAuthor("Frank Herbert", 3L)
+            .build();
+
+        List<String> texts = textsOf(index.suggest("f", 10));
+
+        assertEquals(List.of("Foundation and Empire", "Second Foundation", "Foundation", "Frank Herbert",
+            "Forward the Foundation"), texts,
+            "suggestions should match the start of any title word or author, heaviest first, without repetitions");
+        assertEquals(List.of("Foundation and Empire", "Second Foundation"), textsOf(index.suggest(" FOUND ", 2)),
+            "prefixes should be normalized and the number of suggestions limited");
+        assertEquals(List.of("Foundation and Empire"), textsOf(index.suggest("empire", 10)),
+            "a later title word should complete to the full title");
+    }
+
+    @Test
+    public void testSuggestionPayload() {
+
+        AutocompleteIndex index = new AutocompleteIndex.Builder()
+            .addTitle(1L, "Dune", 2L)
+            .addAuthor("Frank Herbert", 3L)
+            .build();
+
+        AutocompleteIndex.Suggestion title = index.suggest("du", 1).get(0);
+        AutocompleteIndex.Suggestion author = index.suggest("fr", 1).get(0);
+
+        assertEquals(AutocompleteIndex.TITLE, title.getType(), "a title suggestion should be typed as a title");
+        assertEquals(Long.valueOf(1L), title.getBookId(), "a title suggestion should point to its book");
+        assertEquals(AutocompleteIndex.AUTHOR, author.getType(), "an author suggestion should be typed as an author");
+        assertNull(author.getBookId(), "an author suggestion should not point to a single book");
+        assertTrue(index.suggest("zz", 10).isEmpty(), "an unknown prefix should have no suggestions");
+        assertTrue(index.suggest("", 10).isEmpty(), "an empty prefix should have no suggestions");
+    }
+
+    @Test
+    public void testSharedWordPrefixes() {
+
+        AutocompleteIndex index = new AutocompleteIndex.Builder()
+            .addTitle(1L, "The Star Kings", 4L)
+            .addTitle(2L, "Star", 6L)
+            .addTitle(3L, "Stardust", 2L)
+            .addAuthor("Star Author", 1L)
+            .build();
+
+        assertEquals(List.of("Star", "The Star Kings", "Stardust", "Star Author"), textsOf(index.suggest("star", 10)),
+            "keys at the start of a title and within it should be ranked together");
+        assertEquals(List.of("The Star Kings"), textsOf(index.suggest("star k", 10)),
+            "a prefix spanning several words should match from any word start");
+        assertTrue(textsOf(index.suggest("author", 10)).isEmpty(),
+            "authors should only be completed from their start");
+        assertEquals(6, index.size(), "there should be one key per title word and one per author");
+    }
+
+    @Test
+    public void testLatency() {
+
+        int books = Integer.getInteger("test.autocomplete.books", 20_000);
+        Random random = new Random(42L);
+
+        long buildStart = System.nanoTime();
+        AutocompleteIndex.Builder builder = new AutocompleteIndex.Builder();
+        for (int i = 0; i < books; i++) {
+            builder.addTitle(i, WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]
+                + " " + WORDS[random.nextInt(WORDS.length)] + " " + i, random.nextInt(1000));
+            if (i % 5 == 0) {
+                builder.addAuthor("author " + i, random.nextInt(5000));
+            }
+        }
+        AutocompleteIndex index = builder.build();
+        long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+
+        int queries = 20_000;
+        long[] latencies = new long[queries];
+        for (int i = 0; i < queries; i++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            String prefix = word.substring(0, 1 + random.nextInt(word.length()));
+            long start = System.nanoTime();
+            index.suggest(prefix, 10);
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+
+        logger.info("autocomplete index of {} books: {} keys, built in {} ms", books, index.size(), buildMillis);
+        logger.info("autocomplete top-10 query latency: p50 {} us, p99 {} us, max {} us",
+            latencies[queries / 2] / 1_000, latencies[queries * 99 / 100] / 1_000, latencies[queries - 1] / 1_000);
+
+        assertEquals(10, index.suggest("s", 10).size(),
+            "a short prefix over a large index should fill the requested suggestions");
+    }
+
+    private static List<String> textsOf(List<AutocompleteIndex.Suggestion> suggestions) {
+        return suggestions.stream().map(AutocompleteIndex.Suggestion::getText).collect(Collectors.toList());
+    }
+}
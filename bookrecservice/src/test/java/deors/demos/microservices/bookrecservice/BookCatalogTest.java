@@ -0,0 +1,96 @@
+package deors.demos.microservices.bookrecservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class BookCatalogTest {
+
+    private BookRepository bookRepository;
+
+    private BookIdIndex bookIdIndex;
+
+    private MeterRegistry meterRegistry;
+
+    private BookCatalog bookCatalog;
+
+    @BeforeEach
+    public void initCatalog() {
+
+        bookRepository = mock(BookRepository.class);
+        when(bookRepository.findAll()).thenReturn(List.of(
+            new Book(1L, "the first title", "the first author"),
+            new Book(2L, "the second title", "the second author")));
+
+        bookIdIndex = new BookIdIndex();
+        meterRegistry = new SimpleMeterRegistry();
+        bookCatalog = new BookCatalog(bookRepository, bookIdIndex, event -> { }, meterRegistry);
+        bookCatalog.load();
+    }
+
+    @Test
+    public void testLoad() {
+
+        assertEquals(2, bookCatalog.size(),
+            "the catalog should contain the books found in the repository");
+        assertEquals(2, bookIdIndex.size(),
+            "the id index should be loaded together with the catalog");
+    }
+
+    @Test
+    public void testGetHit() {
+
+        Optional<Book> book = bookCatalog.get(1L);
+
+        assertTrue(book.isPresent(), "a loaded book should be found");
+        assertEquals("the first title", book.get().getTitle(),
+            "the book found should be the one loaded from the repository");
+        assertEquals(1.0, meterRegistry.get("bookrec.catalog.requests").tag("result", "hit").counter().count(),
+            "a lookup served from memory should be counted as a hit");
+        verify(bookRepository, never()).findById(1L);
+    }
+
+    @Test
+    public void testGetMiss() {
+
+        when(bookRepository.findById(3L)).thenReturn(Optional.of(new Book(3L, "the third title", "the third author")));
+        when(bookRepository.findById(4L)).thenReturn(Optional.empty());
+
+        assertTrue(bookCatalog.get(3L).isPresent(), "a book missing in memory should be loaded from the repository");
+        assertTrue(bookIdIndex.contains(3L), "a book loaded on a miss should be added to the id index");
+        assertFalse(bookCatalog.get(4L).isPresent(), "a book missing everywhere should not be found");
+        assertEquals(2.0, meterRegistry.get("bookrec.catalog.requests").tag("result", "miss").counter().count(),
+            "lookups that went to the repository should be counted as misses");
+    }
+
+    @Test
+    public void testPutAndRemove() {
+
+        Book updated = new Book(2L, "the updated title", "the second author");
+        Book stored = bookCatalog.put(updated);
+
+        assertNotSame(updated, stored, "the catalog should keep its own copy of the book");
+        updated.setTitle("changed after put");
+        assertEquals("the updated title", bookCatalog.getIfPresent(2L).get().getTitle(),
+            "changes to the entity after an update should not leak into the snapshot");
+
+        bookCatalog.remove(1L);
+
+        assertFalse(bookCatalog.getIfPresent(1L).isPresent(), "a removed book should not be in the catalog");
+        assertFalse(bookIdIndex.contains(1L), "a removed book should not be in the id index");
+    }
+}
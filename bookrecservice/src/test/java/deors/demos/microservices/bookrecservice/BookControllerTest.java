@@ -0,0 +1,251 @@
+package deors.demos.microservices.bookrecservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+import deors.demos.microservices.common.CachedJsonHttpMessageConverter;
+import deors.demos.microservices.common.ServerTimings;
+import io.micrometer.core.instrument.MeterRegistry;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class BookControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BookCatalog bookCatalog;
+
+    @Autowired
+    private BookJsonCache bookJsonCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private RequestMappingHandlerAdapter requestMappingHandlerAdapter;
+
+    @Test
+    public void testGetBookConditionally() throws Exception {
+
+        Book book = bookCatalog.get(1L).orElseThrow();
+
+        MvcResult result = mockMvc.perform(get("/bookrec/1"))
+            .andExpect(status().isOk())
+            .andReturn();
+        String etag = result.getResponse().getHeader(HttpHeaders.ETAG);
+
+        assertNotNull(etag, "a book read should carry an ETag");
+        assertFalse(etag.startsWith("W/"), "the ETag should be a strong validator");
+        assertEquals(objectMapper.writeValueAsString(book), result.getResponse().getContentAsString(),
+            "the cached JSON should match what Jackson writes for the book");
+
+        mockMvc.perform(get("/bookrec/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+            .andExpect(status().isNotModified());
+
+        Book changed = new Book(book.getId(), book.getTitle() + " (revised)", book.getAuthor());
+        changed.setPopularity(book.getPopularity());
+        bookCatalog.put(changed);
+        try {
+            String changedEtag = mockMvc.perform(get("/bookrec/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+            assertNotEquals(etag, changedEtag, "the ETag should change when the book changes");
+        } finally {
+            bookCatalog.put(book);
+        }
+    }
+
+    @Test
+    public void testGetUnknownBook() throws Exception {
+
+        mockMvc.perform(get("/bookrec/" + Long.MAX_VALUE))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testBooksWrittenFromJsonCache() {
+
+        HttpMessageConverter<?> converter = requestMappingHandlerAdapter.getMessageConverters().stream()
+            .filter(candidate -> candidate.canWrite(Book.class, MediaType.APPLICATION_JSON))
+            .findFirst().orElseThrow();
+
+        assertTrue(converter instanceof CachedJsonHttpMessageConverter,
+            "books should be written as JSON by the converter backed by the JSON cache");
+        assertTrue(requestMappingHandlerAdapter.getMessageConverters().stream()
+            .anyMatch(candidate -> candidate instanceof MappingJackson2HttpMessageConverter
+                && !(candidate instanceof CachedJsonHttpMessageConverter)),
+            "the Jackson converter configured by Spring Boot should still be registered for other types");
+    }
+
+    @Test
+    public void testJsonReusedForSameSnapshot() {
+
+        Book book = bookCatalog.get(1L).orElseThrow();
+
+        assertSame(bookJsonCache.get(book), bookJsonCache.get(book),
+            "the same snapshot should be served from the cache");
+    }
+
+    @Test
+    public void testGetBookRecommendationsFromCache() throws Exception {
+
+        String body = mockMvc.perform(get("/bookrec").param("count", "3"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+        JsonNode books = objectMapper.readTree(body);
+
+        assertTrue(books.isArray(), "multi-book recommendations should be a JSON array");
+        assertEquals(3, books.size(), "three books should be recommended");
+        for (JsonNode book : books) {
+            assertTrue(book.hasNonNull("id") && book.hasNonNull("title") && book.hasNonNull("author"),
+                "every recommended book should be complete");
+        }
+    }
+
+    @Test
+    public void testGetBookRecommendationsAsCbor() throws Exception {
+
+        MvcResult result = mockMvc.perform(get("/bookrec").param("count", "3").accept(MediaType.APPLICATION_CBOR))
+            .andExpect(status().isOk())
+            .andReturn();
+
+        assertEquals(MediaType.APPLICATION_CBOR_VALUE, result.getResponse().getContentType(),
+            "CBOR should be returned when asked for");
+        Book[] books = new CBORMapper().readValue(result.getResponse().getContentAsByteArray(), Book[].class);
+        assertEquals(3, books.length, "three books should be recommended");
+        for (Book book : books) {
+            assertEquals(bookCatalog.get(book.getId()).orElseThrow().getTitle(), book.getTitle(),
+                "every book should be decoded as it is in the catalog");
+        }
+    }
+
+    @Test
+    public void testGetBookVaryByAccept() throws Exception {
+
+        MvcResult result = mockMvc.perform(get("/bookrec/1").accept(MediaType.APPLICATION_CBOR))
+            .andExpect(status().isOk())
+            .andReturn();
+
+        assertEquals(MediaType.APPLICATION_CBOR_VALUE, result.getResponse().getContentType(),
+            "CBOR should be returned when asked for");
+        assertTrue(result.getResponse().getHeaders(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT),
+            "caches should keep the JSON and CBOR representations apart");
+    }
+
+    @Test
+    public void testGetBookETagByRepresentation() throws Exception {
+
+        String jsonEtag = mockMvc.perform(get("/bookrec/1").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        MvcResult result = mockMvc.perform(get("/bookrec/1").accept(MediaType.APPLICATION_CBOR)
+                .header(HttpHeaders.IF_NONE_MATCH, jsonEtag))
+            .andExpect(status().isOk())
+            .andReturn();
+        String cborEtag = result.getResponse().getHeader(HttpHeaders.ETAG);
+
+        assertEquals(MediaType.APPLICATION_CBOR_VALUE, result.getResponse().getContentType(),
+            "a CBOR request with the JSON ETag should get the CBOR representation");
+        assertNotEquals(jsonEtag, cborEtag, "each representation should have its own ETag");
+        assertFalse(cborEtag.startsWith("W/"), "the ETag should be a strong validator");
+
+        mockMvc.perform(get("/bookrec/1").accept(MediaType.APPLICATION_CBOR).header(HttpHeaders.IF_NONE_MATCH, cborEtag))
+            .andExpect(status().isNotModified());
+        mockMvc.perform(get("/bookrec/1").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_NONE_MATCH, cborEtag))
+            .andExpect(status().isOk());
+    }
+
+    @Test
+    public void testServerTiming() throws Exception {
+
+        String serverTiming = mockMvc.perform(get("/bookrec"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getHeader(ServerTimings.HEADER);
+
+        assertNotNull(serverTiming, "a recommendation should carry a Server-Timing header");
+        assertTrue(serverTiming.matches("(.*, )?recommend;dur=\\d+\\.\\d{3}, .*"),
+            "the time spent by the recommender should be reported");
+        assertTrue(serverTiming.matches(".*app;dur=\\d+\\.\\d{3}"),
+            "the total time should be reported last");
+        assertNotNull(meterRegistry.find("bookrec.stage").tag("stage", "recommend").timer(),
+            "the recommender stage should be recorded as a metric");
+    }
+
+    @Test
+    public void testRejectExpiredDeadline() throws Exception {
+
+        double expired = meterRegistry.counter("bookrec.deadline.requests", "result", "expired").count();
+        long now = System.currentTimeMillis();
+
+        mockMvc.perform(get("/bookrec")
+                .header(RequestDeadlineInterceptor.SENT_HEADER, now - 1500)
+                .header(RequestDeadlineInterceptor.DEADLINE_HEADER, now - 500))
+            .andExpect(status().isServiceUnavailable());
+
+        assertEquals(expired + 1, meterRegistry.counter("bookrec.deadline.requests", "result", "expired").count(),
+            "the rejected request should be counted as expired");
+    }
+
+    @Test
+    public void testAcceptPendingDeadline() throws Exception {
+
+        double accepted = meterRegistry.counter("bookrec.deadline.requests", "result", "accepted").count();
+        long queued = meterRegistry.timer("bookrec.deadline.queue").count();
+        long now = System.currentTimeMillis();
+
+        mockMvc.perform(get("/bookrec")
+                .header(RequestDeadlineInterceptor.SENT_HEADER, now)
+                .header(RequestDeadlineInterceptor.DEADLINE_HEADER, now + 60_000))
+            .andExpect(status().isOk());
+
+        assertEquals(accepted + 1, meterRegistry.counter("bookrec.deadline.requests", "result", "accepted").count(),
+            "the request should be counted as accepted");
+        assertEquals(queued + 1, meterRegistry.timer("bookrec.deadline.queue").count(),
+            "the queue time of the request should be recorded");
+    }
+
+    @Test
+    public void testGetRepositoryBookConditionally() throws Exception {
+
+        String etag = mockMvc.perform(get("/books/1"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        assertNotNull(etag, "a repository read should carry an ETag");
+        assertFalse(etag.startsWith("W/"), "the ETag should be a strong validator");
+
+        mockMvc.perform(get("/books/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+            .andExpect(status().isNotModified());
+    }
+}
@@ -0,0 +1,117 @@
+package deors.demos.microservices.bookrecservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+public class BookIdIndexTest {
+
+    @Test
+    public void testEmptyIndex() {
+
+        BookIdIndex index = new BookIdIndex();
+
+        assertEquals(0, index.size(),
+            "a new index should be empty");
+        assertTrue(index.randomId().isEmpty(),
+            "a random pick on an empty index should return no id");
+    }
+
+    @Test
+    public void testAddAndRemove() {
+
+        BookIdIndex index = new BookIdIndex();
+
+        assertTrue(index.add(10L), "adding a new id should succeed");
+        assertTrue(index.add(20L), "adding a new id should succeed");
+        assertFalse(index.add(10L), "adding an existing id should be ignored");
+
+        assertEquals(2, index.size(),
+            "the index should contain two ids");
+
+        assertTrue(index.remove(10L), "removing an existing id should succeed");
+        assertFalse(index.remove(10L), "removing a missing id should be ignored");
+
+        assertFalse(index.contains(10L), "a removed id should not be contained");
+        assertTrue(index.contains(20L), "a remaining id should still be contained");
+        assertEquals(OptionalLong.of(20L), index.randomId(),
+            "a random pick on a single-entry index should return that entry");
+    }
+
+    @Test
+    public void testGrowAndShrink() {
+
+        BookIdIndex index = new BookIdIndex();
+
+        for (long id = 1; id <= 10_000; id++) {
+            index.add(id);
+        }
+        for (long id = 1; id <= 10_000; id += 2) {
+            index.remove(id);
+        }
+
+        assertEquals(5_000, index.size(),
+            "the index should keep only the even ids");
+
+        for (long id = 1; id <= 10_000; id++) {
+            assertEquals(id % 2 == 0, index.contains(id),
+                "only even ids should remain in the index");
+        }
+    }
+
+    @Test
+    public void testRandomIdCoversAllEntries() {
+
+        BookIdIndex index = new BookIdIndex();
+        index.replaceAll(new long[] { 1L, 2L, 3L, 4L, 5L, 5L });
+
+        assertEquals(5, index.size(),
+            "duplicated ids should be loaded only once");
+
+        Set<Long> picked = new HashSet<>();
+        for (int i = 0; i < 1_000; i++) {
+            picked.add(index.randomId().getAsLong());
+        }
+
+        assertEquals(Set.of(1L, 2L, 3L, 4L, 5L), picked,
+            "random picks should eventually cover every id in the index");
+    }
+
+    @Test
+    public void testRandomIdsAreDistinct() {
+
+        BookIdIndex index = new BookIdIndex();
+        for (long id = 1; id <= 1_000; id++) {
+            index.add(id);
+        }
+
+        long[] sample = index.randomIds(50);
+
+        assertEquals(50, sample.length,
+            "the sample should have the requested size");
+        assertEquals(50, Arrays.stream(sample).distinct().count(),
+            "the sample should not contain repeated ids");
+        assertTrue(Arrays.stream(sample).allMatch(index::contains),
+            "the sample should contain only ids in the index");
+    }
+
+    @Test
+    public void testRandomIdsLargerThanIndex() {
+
+        BookIdIndex index = new BookIdIndex();
+        index.replaceAll(new long[] { 1L, 2L, 3L });
+
+        long[] sample = index.randomIds(10);
+
+        assertEquals(Set.of(1L, 2L, 3L), Arrays.stream(sample).boxed().collect(Collectors.toSet()),
+            "a sample larger than the index should return every id once");
+    }
+}
@@ -0,0 +1,102 @@
+package deors.demos.microservices.bookrecservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+public class BookIngestionServiceTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookIngestionServiceTest.class);
+
+    @Autowired
+    private BookIngestionService bookIngestionService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Test
+    public void testIngestCsvThroughput() throws Exception {
+
+        int rows = Integer.getInteger("test.ingest.rows", 20_000);
+        long before = bookRepository.count();
+
+        IngestionReport report = bookIngestionService.ingest(generatedCsv(rows), BookIngestionService.Format.CSV);
+
+        logger.info("ingested {} rows in {} ms, {} rows/s",
+            report.getRows(), report.getElapsedMillis(), Math.round(report.getRowsPerSecond()));
+
+        assertEquals(rows, report.getRows(),
+            "every generated row should be ingested");
+        assertEquals(0L, report.getRejected(),
+            "no generated row should be rejected");
+        assertEquals(before + rows, bookRepository.count(),
+            "the repository should contain the ingested rows");
+    }
+
+    @Test
+    public void testIngestNdjsonWithRejections() throws Exception {
+
+        String ndjson = "{\"title\":\"the first title\",\"author\":\"the first author\",\"popularity\":3}\n"
+            + "{\"title\":\"missing author\"}\n"
+            + "not json at all\n"
+            + "\n"
+            + "{\"title\":\"the second title\",\"author\":\"the second author\"}\n";
+
+        IngestionReport report = bookIngestionService.ingest(
+            new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), BookIngestionService.Format.NDJSON);
+
+        assertEquals(2L, report.getRows(),
+            "the two valid lines should be ingested");
+        assertEquals(2L, report.getRejected(),
+            "the two invalid lines should be rejected");
+    }
+
+    @Test
+    public void testSplitCsv() {
+
+        assertEquals(List.of("the title", "the author", "7"), BookIngestionService.splitCsv("the title,the author,7"),
+            "plain fields should be split on commas");
+        assertEquals(List.of("dune, messiah", "frank \"the\" herbert"),
+            BookIngestionService.splitCsv("\"dune, messiah\",\"frank \"\"the\"\" herbert\""),
+            "quoted fields may contain commas and escaped quotes");
+        assertThrows(IllegalArgumentException.class, () -> BookIngestionService.splitCsv("\"unterminated,field"),
+            "an unterminated quoted field should be rejected");
+    }
+
+    // generates the CSV lazily, so the benchmark measures ingestion and not building the input
+    private static InputStream generatedCsv(int rows) {
+        Enumeration<InputStream> lines = new Enumeration<>() {
+            private int next = -1;
+
+            @Override
+            public boolean hasMoreElements() {
+                return next < rows;
+            }
+
+            @Override
+            public InputStream nextElement() {
+                String line = next < 0 ? "title,author,popularity\n"
+                    : "generated title " + next + ",generated author " + (next % 1000) + "," + (next % 10) + "\n";
+                next++;
+                return new ByteArrayInputStream(line.getBytes(StandardCharsets.UTF_8));
+            }
+        };
+        return new SequenceInputStream(lines);
+    }
+}
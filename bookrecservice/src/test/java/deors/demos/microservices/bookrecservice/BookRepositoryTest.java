@@ -12,6 +12,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 @ExtendWith(SpringExtension.class)
@@ -90,4 +91,27 @@ public class BookRepositoryTest {
         assertEquals(10, foundBooks.size(),
             "the number of found books should be ten after delete");
     }
+
+    @Test
+    public void testGetBookIds() {
+
+        List<Long> bookIds = bookRepository.getBookIds();
+
+        assertEquals(10, bookIds.size(),
+            "the number of found book ids should be ten");
+    }
+
+    @Test
+    public void testFindPageAfter() {
+
+        List<Book> firstPage = bookRepository.findPageAfter(Long.MIN_VALUE, PageRequest.ofSize(4));
+        List<Book> secondPage = bookRepository.findPageAfter(firstPage.get(3).getId(), PageRequest.ofSize(4));
+        List<Book> lastPage = bookRepository.findPageAfter(secondPage.get(3).getId(), PageRequest.ofSize(4));
+
+        assertEquals(4, firstPage.size(), "the first page should be full");
+        assertEquals(4, secondPage.size(), "the second page should be full");
+        assertEquals(2, lastPage.size(), "the last page should contain the remaining two books");
+        assertTrue(firstPage.get(3).getId() < secondPage.get(0).getId(),
+            "pages should follow each other in ascending id order");
+    }
 }
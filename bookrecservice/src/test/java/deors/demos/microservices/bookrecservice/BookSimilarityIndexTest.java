@@ -0,0 +1,87 @@
+package deors.demos.microservices.bookrecservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class BookSimilarityIndexTest {
+
+    private BookCatalog bookCatalog;
+
+    private BookSimilarityIndex bookSimilarityIndex;
+
+    @BeforeEach
+    public void initIndex() {
+
+        BookRepository bookRepository = mock(BookRepository.class);
+        when(bookRepository.findAll()).thenReturn(List.of(
+            new Book(1L, "foundation", "isaac asimov"),
+            new Book(2L, "second foundation", "isaac asimov"),
+            new Book(3L, "foundation and empire", "isaac asimov"),
+            new Book(4L, "the robots of dawn", "isaac asimov"),
+            new Book(5L, "foundation's edge", "someone else"),
+            new Book(6L, "the lord of the rings", "j.r.r. tolkien")));
+
+        List<BookSimilarityIndex> listeners = new ArrayList<>();
+        bookCatalog = new BookCatalog(bookRepository, new BookIdIndex(),
+            event -> listeners.forEach(listener -> listener.onBookChanged((BookChangedEvent) event)),
+            new SimpleMeterRegistry());
+        bookCatalog.load();
+
+        bookSimilarityIndex = new BookSimilarityIndex(bookCatalog);
+        bookSimilarityIndex.build();
+        listeners.add(bookSimilarityIndex);
+    }
+
+    @Test
+    public void testSimilarByAuthorAndTitle() {
+
+        List<Long> similar = idsOf(bookSimilarityIndex.similar(2L, 10).get());
+
+        assertEquals(List.of(1L, 3L, 4L, 5L), similar,
+            "books sharing author and title words should rank before books sharing only one of them");
+    }
+
+    @Test
+    public void testCountLimitsResults() {
+
+        assertEquals(2, bookSimilarityIndex.similar(2L, 2).get().size(),
+            "the number of similar books should be limited to the requested count");
+    }
+
+    @Test
+    public void testUnknownAndUnrelatedBooks() {
+
+        assertTrue(bookSimilarityIndex.similar(99L, 10).isEmpty(),
+            "an unknown book should not have a result");
+        assertTrue(bookSimilarityIndex.similar(6L, 10).get().isEmpty(),
+            "a book sharing nothing but stop words should have no similar books");
+    }
+
+    @Test
+    public void testIndexFollowsCatalogChanges() {
+
+        bookCatalog.put(new Book(7L, "the rings of power", "j.r.r. tolkien"));
+        bookCatalog.put(new Book(1L, "pebble in the sky", "isaac asimov"));
+        bookCatalog.remove(3L);
+
+        assertEquals(List.of(7L), idsOf(bookSimilarityIndex.similar(6L, 10).get()),
+            "a new book should be indexed when it is added to the catalog");
+        assertEquals(List.of(1L, 4L, 5L), idsOf(bookSimilarityIndex.similar(2L, 10).get()),
+            "updated and removed books should no longer be related by their previous title words");
+    }
+
+    private static List<Long> idsOf(List<Book> books) {
+        return books.stream().map(Book::getId).collect(Collectors.toList());
+    }
+}
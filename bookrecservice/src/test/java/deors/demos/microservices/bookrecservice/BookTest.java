@@ -19,6 +19,8 @@ public class BookTest {
             "on a bean just created with the empty constructor, title should be null");
         assertNull(b.getAuthor(),
             "on a bean just created with the empty constructor, author should be null");
+        assertEquals(0L, b.getPopularity(),
+            "on a bean just created with the empty constructor, popularity should be zero");
     }
 
     @Test
@@ -41,6 +43,7 @@ public class BookTest {
         b.setId(Long.valueOf(1000L));
         b.setTitle("the title");
         b.setAuthor("the author");
+        b.setPopularity(25L);
 
         assertEquals(Long.valueOf(1000L), b.getId(),
             "on a bean, id should be the same as the value passed to the setter");
@@ -48,6 +51,8 @@ public class BookTest {
             "on a bean, title should be the same as the value passed to the setter");
         assertEquals("the author", b.getAuthor(),
             "on a bean, author should be the same as the value passed to the setter");
+        assertEquals(25L, b.getPopularity(),
+            "on a bean, popularity should be the same as the value passed to the setter");
     }
 
     @Test
@@ -1,15 +1,29 @@
 package deors.demos.microservices.bookrecservice;
 
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 @ExtendWith(SpringExtension.class)
 @SpringBootTest
 public class BookrecserviceApplicationTests {
 
+    @Autowired
+    private ApplicationContext applicationContext;
+
     @Test
     public void contextLoads() {
     }
+
+    @Test
+    public void testNoLatencyInjectionByDefault() {
+
+        assertTrue(applicationContext.getBeansOfType(LatencyInjectionInterceptor.class).isEmpty(),
+            "latency should only be injected with the loadtest profile");
+    }
 }
@@ -97,4 +97,56 @@ public class BookrecserviceIntegrationTest {
         assertTrue(response.getBody().contains("\"author\":"),
             "returned data should include some book author");
     }
+
+    @Test
+    public void testGetBookRandomRecommendations() {
+
+        TestRestTemplate restTemplate = new TestRestTemplate();
+
+        HttpHeaders headers = new HttpHeaders();
+        HttpEntity<String> entity = new HttpEntity<String>(null, headers);
+
+        ResponseEntity<String> response = restTemplate.exchange(
+            TARGET_SERVER_URL + "bookrec?count=3",
+            HttpMethod.GET, entity, String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode(),
+            "call to /bookrec?count=3 should respond with code 200");
+
+        assertTrue(response.getBody().startsWith("["),
+            "returned data should be a list of books");
+
+        assertEquals(3, response.getBody().split("\"title\":").length - 1,
+            "returned data should include three book titles");
+    }
+
+    @Test
+    public void testGetBookConditionally() {
+
+        TestRestTemplate restTemplate = new TestRestTemplate();
+
+        HttpHeaders headers = new HttpHeaders();
+        HttpEntity<String> entity = new HttpEntity<String>(null, headers);
+
+        ResponseEntity<String> response = restTemplate.exchange(
+            TARGET_SERVER_URL + "bookrec/1",
+            HttpMethod.GET, entity, String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode(),
+            "call to /bookrec/1 should respond with code 200");
+
+        String etag = response.getHeaders().getETag();
+        assertTrue(etag != null && !etag.startsWith("W/"),
+            "returned data should carry a strong ETag");
+
+        headers.setIfNoneMatch(etag);
+        entity = new HttpEntity<String>(null, headers);
+
+        response = restTemplate.exchange(
+            TARGET_SERVER_URL + "bookrec/1",
+            HttpMethod.GET, entity, String.class);
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode(),
+            "call to /bookrec/1 with a matching ETag should respond with code 304");
+    }
 }
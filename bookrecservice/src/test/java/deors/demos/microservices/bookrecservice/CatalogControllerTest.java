@@ -0,0 +1,98 @@
+package deors.demos.microservices.bookrecservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.DelegatingServletOutputStream;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = "bookrec.export.pageSize=3")
+@AutoConfigureMockMvc
+public class CatalogControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private CatalogController catalogController;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    public void testExportNdjson() throws Exception {
+
+        String body = mockMvc.perform(get("/catalog/export"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(CatalogController.APPLICATION_NDJSON))
+            .andReturn().getResponse().getContentAsString();
+
+        assertTrue(body.endsWith("\n"),
+            "every exported book should end with a line break");
+
+        String[] lines = body.split("\n");
+        assertEquals(bookRepository.count(), lines.length,
+            "the export should contain one line per book, across all pages");
+
+        long previousId = Long.MIN_VALUE;
+        for (String line : lines) {
+            assertTrue(line.startsWith("{"),
+                "every exported line should start with a JSON object");
+            JsonNode book = objectMapper.readTree(line);
+            assertTrue(book.path("id").asLong() > previousId,
+                "exported books should be in ascending id order without repetitions");
+            assertTrue(book.hasNonNull("title") && book.hasNonNull("author"),
+                "every exported line should be a complete book");
+            previousId = book.path("id").asLong();
+        }
+    }
+
+    @Test
+    public void testExportFlushedOncePerPage() throws Exception {
+
+        AtomicInteger flushes = new AtomicInteger();
+        MockHttpServletResponse response = new MockHttpServletResponse() {
+            @Override
+            public ServletOutputStream getOutputStream() {
+                ServletOutputStream out = super.getOutputStream();
+                return new DelegatingServletOutputStream(out) {
+                    @Override
+                    public void flush() throws IOException {
+                        flushes.incrementAndGet();
+                        super.flush();
+                    }
+                };
+            }
+        };
+
+        catalogController.exportNdjson(response);
+
+        // pages of three books, plus the flush when the generator is closed
+        long pages = bookRepository.count() / 3 + 1;
+        assertTrue(flushes.get() <= pages + 1,
+            "the response should be flushed once per page, not after every book, but was flushed "
+                + flushes.get() + " times for " + bookRepository.count() + " books");
+    }
+}
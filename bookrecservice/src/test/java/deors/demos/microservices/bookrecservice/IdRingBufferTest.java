@@ -0,0 +1,83 @@
+package deors.demos.microservices.bookrecservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class IdRingBufferTest {
+
+    @Test
+    public void testCapacityIsPowerOfTwo() {
+
+        assertEquals(8, new IdRingBuffer(5).capacity(), "capacity should be rounded up to a power of two");
+        assertEquals(8, new IdRingBuffer(8).capacity(), "a power of two capacity should be kept");
+    }
+
+    @Test
+    public void testOfferAndPollInOrder() {
+
+        IdRingBuffer ring = new IdRingBuffer(4);
+
+        for (long id = 1; id <= 4; id++) {
+            assertTrue(ring.offer(id), "offers should succeed while the ring is not full");
+        }
+        assertFalse(ring.offer(5L), "an offer should fail when the ring is full");
+        assertEquals(4, ring.size(), "the ring should be full");
+
+        assertEquals(OptionalLong.of(1L), ring.poll(), "ids should be handed out in order");
+        assertTrue(ring.offer(5L), "a slot should be reusable once it has been taken");
+        for (long id = 2; id <= 5; id++) {
+            assertEquals(OptionalLong.of(id), ring.poll(), "ids should be handed out in order after wrapping");
+        }
+        assertTrue(ring.poll().isEmpty(), "an empty ring should hand out nothing");
+    }
+
+    @Test
+    public void testConcurrentConsumersTakeEveryIdOnce() throws Exception {
+
+        IdRingBuffer ring = new IdRingBuffer(64);
+        int total = 100_000;
+        int consumers = 4;
+        ConcurrentHashMap<Long, Boolean> taken = new ConcurrentHashMap<>();
+        AtomicInteger duplicates = new AtomicInteger();
+        AtomicBoolean producing = new AtomicBoolean(true);
+        CountDownLatch done = new CountDownLatch(consumers);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < consumers; i++) {
+            threads.add(new Thread(() -> {
+                while (producing.get() || ring.size() > 0) {
+                    OptionalLong id = ring.poll();
+                    if (id.isEmpty()) {
+                        Thread.yield();
+                    } else if (taken.put(id.getAsLong(), Boolean.TRUE) != null) {
+                        duplicates.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            }));
+        }
+        threads.forEach(Thread::start);
+
+        for (long id = 0; id < total; id++) {
+            while (!ring.offer(id)) {
+                Thread.yield();
+            }
+        }
+        producing.set(false);
+        done.await();
+
+        assertEquals(0, duplicates.get(), "no id should be handed out twice");
+        assertEquals(total, taken.size(), "every id offered should be handed out");
+    }
+}
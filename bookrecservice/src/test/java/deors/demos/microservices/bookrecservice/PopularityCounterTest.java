@@ -0,0 +1,67 @@
+package deors.demos.microservices.bookrecservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class PopularityCounterTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Test
+    public void testFailedFlushKept() {
+
+        BookRepository failingOnce = mock(BookRepository.class);
+        when(failingOnce.incrementPopularity(anyLong(), anyLong()))
+            .thenThrow(new DataAccessResourceFailureException("database down"))
+            .thenReturn(0);
+        PopularityCounter counter = new PopularityCounter();
+        ReflectionTestUtils.setField(counter, "bookRepository", failingOnce);
+
+        counter.accept(1L);
+        counter.accept(1L);
+        counter.accept(1L);
+        counter.flush();
+        counter.accept(1L);
+        counter.flush();
+
+        // accepts that failed to flush should be flushed later along with the new ones
+        verify(failingOnce).incrementPopularity(1L, 3L);
+        verify(failingOnce).incrementPopularity(1L, 4L);
+    }
+
+    @Test
+    public void testPopularityNotWritableThroughRest() throws Exception {
+
+        long popularity = bookRepository.findById(1L).orElseThrow().getPopularity();
+
+        mockMvc.perform(patch("/books/1").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"popularity\":" + (popularity + 1000L) + "}"))
+            .andExpect(status().is2xxSuccessful());
+
+        assertEquals(popularity, bookRepository.findById(1L).orElseThrow().getPopularity(),
+            "popularity should only change through accepted recommendations");
+    }
+}
@@ -0,0 +1,79 @@
+package deors.demos.microservices.common;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes values of one type, and collections of them, as JSON straight from a serialized form
+ * kept elsewhere, e.g. in a cache. It only takes part in writing those types; reading and
+ * anything else is left to the regular Jackson converter.
+ */
+public class CachedJsonHttpMessageConverter<T> extends MappingJackson2HttpMessageConverter {
+
+    private final Class<T> valueType;
+
+    private final Function<T, byte[]> json;
+
+    public CachedJsonHttpMessageConverter(ObjectMapper objectMapper, Class<T> valueType, Function<T, byte[]> json) {
+        super(objectMapper);
+        setSupportedMediaTypes(List.of(MediaType.APPLICATION_JSON));
+        this.valueType = valueType;
+        this.json = json;
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return valueType == clazz && canWrite(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        if (valueType == clazz) {
+            return canWrite(mediaType);
+        }
+        return Collection.class.isAssignableFrom(clazz)
+            && type instanceof ParameterizedType
+            && ((ParameterizedType) type).getActualTypeArguments()[0] == valueType
+            && canWrite(mediaType);
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+        OutputStream body = outputMessage.getBody();
+        if (valueType.isInstance(object)) {
+            body.write(json.apply(valueType.cast(object)));
+            return;
+        }
+        body.write('[');
+        boolean first = true;
+        for (Object value : (Collection<?>) object) {
+            if (!first) {
+                body.write(',');
+            }
+            body.write(json.apply(valueType.cast(value)));
+            first = false;
+        }
+        body.write(']');
+    }
+}
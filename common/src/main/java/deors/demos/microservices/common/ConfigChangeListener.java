@@ -0,0 +1,190 @@
+package deors.demos.microservices.common;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cloud.context.refresh.ContextRefresher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Listens to the configuration change stream of this application in configservice, and
+ * refreshes the environment when a change names some properties. The environment is reloaded
+ * as a whole, then the properties whose local value changed are rebound, configuration
+ * properties and logging levels alike; named properties that kept their value, because a
+ * local source overrides them, are reported. Nothing is polled and no message bus is needed.
+ * The stream is opened again after a pause whenever it is closed or configservice is not
+ * available. Shared by the services, which scan the common package for it.
+ */
+@Component
+public class ConfigChangeListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConfigChangeListener.class);
+
+    private static final String CHANGE_EVENT = "change";
+
+    private static final String SUBSCRIBED_EVENT = "subscribed";
+
+    private final ContextRefresher contextRefresher;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final boolean enabled;
+
+    private final URI changes;
+
+    private final long reconnectMillis;
+
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+
+    private volatile boolean running;
+
+    private volatile Stream<String> lines;
+
+    private boolean subscribed;
+
+    @Autowired
+    public ConfigChangeListener(ContextRefresher contextRefresher, Environment environment,
+            @Value("${configchanges.enabled:true}") boolean enabled,
+            @Value("${configchanges.uri:http://${CONFIG_HOST:localhost}:${CONFIG_PORT:6868}}") String uri,
+            @Value("${configchanges.reconnectMillis:5000}") long reconnectMillis,
+            @Value("${spring.application.name}") String application) {
+        this.contextRefresher = contextRefresher;
+        this.enabled = enabled;
+        this.reconnectMillis = reconnectMillis;
+        String profiles = String.join(",", environment.getActiveProfiles());
+        this.changes = URI.create(uri + "/changes/" + application + "/" + (profiles.isEmpty() ? "default" : profiles));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(this::listen, "config-change-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        Stream<String> current = lines;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    private void listen() {
+        HttpRequest request = HttpRequest.newBuilder(changes).header("Accept", "text/event-stream").build();
+        while (running) {
+            try {
+                HttpResponse<Stream<String>> response = httpClient.send(request, HttpResponse.BodyHandlers.ofLines());
+                lines = response.body();
+                if (response.statusCode() == 200) {
+                    logger.info("listening to configuration changes at {}", changes);
+                    consume(lines.iterator());
+                } else {
+                    logger.debug("configuration change stream at {} answered {}", changes, response.statusCode());
+                }
+                lines.close();
+            } catch (IOException | RuntimeException e) {
+                logger.debug("configuration change stream at {} not available", changes, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            pause();
+        }
+    }
+
+    // server-sent events are lines of fields, and a blank line ends every event
+    void consume(Iterator<String> events) {
+        String event = null;
+        StringBuilder data = new StringBuilder();
+        while (events.hasNext()) {
+            String line = events.next();
+            if (line.isEmpty()) {
+                if (CHANGE_EVENT.equals(event)) {
+                    onChange(keysOf(data.toString()));
+                } else if (SUBSCRIBED_EVENT.equals(event)) {
+                    // changes made while the stream was closed were not announced
+                    if (subscribed) {
+                        onChange(null);
+                    }
+                    subscribed = true;
+                }
+                event = null;
+                data.setLength(0);
+            } else if (line.startsWith("event:")) {
+                event = line.substring("event:".length()).trim();
+            } else if (line.startsWith("data:")) {
+                data.append(data.length() == 0 ? "" : "\n").append(line.substring("data:".length()).trim());
+            }
+        }
+    }
+
+    // null when the changed properties are not known, e.g. after a reconnection
+    private void onChange(Set<String> announced) {
+        if (announced != null && announced.isEmpty()) {
+            return;
+        }
+        Set<String> keys = contextRefresher.refreshEnvironment();
+        logger.info("configuration refreshed, changed properties: {}", keys);
+        if (announced != null && !keys.containsAll(announced)) {
+            Set<String> shadowed = new TreeSet<>(announced);
+            shadowed.removeAll(keys);
+            logger.info("announced properties unchanged here, overridden by a local source: {}", shadowed);
+        }
+    }
+
+    Set<String> keysOf(String data) {
+        try {
+            JsonNode keys = objectMapper.readTree(data).get("keys");
+            if (keys == null || !keys.isArray()) {
+                return null;
+            }
+            Set<String> names = new TreeSet<>();
+            keys.forEach(key -> names.add(key.asText()));
+            return names;
+        } catch (JsonProcessingException e) {
+            // refreshed anyway, as if any property could have changed
+            logger.debug("configuration change not readable: {}", data, e);
+            return null;
+        }
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(reconnectMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    public URI getChanges() {
+        return changes;
+    }
+}
@@ -0,0 +1,73 @@
+package deors.demos.microservices.common;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Adds the Server-Timing header to responses of timed requests, right before the body is
+ * written, and records the stages of this service in the histogram named by servertiming.metric.
+ * Requests that were not timed are left as they are.
+ */
+@ControllerAdvice
+public class ServerTimingAdvice implements ResponseBodyAdvice<Object> {
+
+    private final MeterRegistry meterRegistry;
+
+    private final String metric;
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public ServerTimingAdvice(MeterRegistry meterRegistry,
+            @Value("${servertiming.metric:servertiming.stage}") String metric) {
+        this.meterRegistry = meterRegistry;
+        this.metric = metric;
+    }
+
+    private Timer timerOf(String stage) {
+        return timers.computeIfAbsent(stage, key -> Timer.builder(metric)
+            .tag("stage", key)
+            .description("Time spent by requests in each stage")
+            .publishPercentileHistogram()
+            .maximumExpectedValue(Duration.ofSeconds(10))
+            .register(meterRegistry));
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+            Class<? extends HttpMessageConverter<?>> selectedConverterType,
+            ServerHttpRequest request, ServerHttpResponse response) {
+        if (request instanceof ServletServerHttpRequest) {
+            ServerTimings timings = ServerTimings.of(((ServletServerHttpRequest) request).getServletRequest());
+            if (timings.isStarted()) {
+                response.getHeaders().set(ServerTimings.HEADER, timings.toHeader());
+                // stages reported by called services are recorded there already
+                timings.forEach((stage, nanos) -> {
+                    if (stage.indexOf('.') < 0) {
+                        timerOf(stage).record(nanos, TimeUnit.NANOSECONDS);
+                    }
+                });
+            }
+        }
+        return body;
+    }
+}
@@ -0,0 +1,28 @@
+package deors.demos.microservices.common;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Starts timing the request. Each service registers it for the paths it wants timed, and
+ * may name the stage for its total time with servertiming.total.
+ */
+@Component
+public class ServerTimingInterceptor implements HandlerInterceptor {
+
+    private final String total;
+
+    public ServerTimingInterceptor(@Value("${servertiming.total:" + ServerTimings.TOTAL + "}") String total) {
+        this.total = total;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        ServerTimings.start(request, total);
+        return true;
+    }
+}
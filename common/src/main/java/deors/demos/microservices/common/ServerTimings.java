@@ -0,0 +1,145 @@
+package deors.demos.microservices.common;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Time spent by the current request in each stage of the hot path, kept as a request
+ * attribute and sent back to the caller in a Server-Timing header, together with the stages
+ * reported by called services in their own headers. Calls to other services may run on other
+ * threads, so the timings are handed over to them explicitly: bound to the thread for blocking
+ * calls, and as a request attribute for WebClient calls.
+ */
+public class ServerTimings {
+
+    public static final String HEADER = "Server-Timing";
+
+    // the total time of a request, unless the service names it otherwise, as called services do
+    public static final String TOTAL = "app";
+
+    public static final String NETWORK = "net";
+
+    public static final String ATTRIBUTE = ServerTimings.class.getName();
+
+    private static final ThreadLocal<ServerTimings> BOUND = new ThreadLocal<>();
+
+    // used outside of a request, e.g. while prefetching, so that callers need not check
+    private static final ServerTimings NONE = new ServerTimings(TOTAL, 0) {
+        @Override
+        public void record(String stage, long nanos) {
+        }
+    };
+
+    private final String total;
+
+    private final long startNanos;
+
+    private final Map<String, Long> stages = new LinkedHashMap<>();
+
+    private ServerTimings(String total, long startNanos) {
+        this.total = total;
+        this.startNanos = startNanos;
+    }
+
+    static void start(HttpServletRequest request, String total) {
+        // the request is dispatched again to write the result of a reactive handler
+        if (request.getAttribute(ATTRIBUTE) == null) {
+            request.setAttribute(ATTRIBUTE, new ServerTimings(total, System.nanoTime()));
+        }
+    }
+
+    static ServerTimings of(HttpServletRequest request) {
+        Object timings = request.getAttribute(ATTRIBUTE);
+        return timings instanceof ServerTimings ? (ServerTimings) timings : NONE;
+    }
+
+    public static ServerTimings current() {
+        ServerTimings bound = BOUND.get();
+        if (bound != null) {
+            return bound;
+        }
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        Object timings = attributes == null ? null : attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        return timings instanceof ServerTimings ? (ServerTimings) timings : NONE;
+    }
+
+    public <T> T bind(Supplier<T> action) {
+        ServerTimings previous = BOUND.get();
+        BOUND.set(this);
+        try {
+            return action.get();
+        } finally {
+            BOUND.set(previous);
+        }
+    }
+
+    public <T> T time(String stage, Supplier<T> action) {
+        long start = System.nanoTime();
+        try {
+            return action.get();
+        } finally {
+            record(stage, System.nanoTime() - start);
+        }
+    }
+
+    public synchronized void record(String stage, long nanos) {
+        stages.merge(stage, nanos, Long::sum);
+    }
+
+    /**
+     * Records a call as seen from here, the stages reported by the called service prefixed by
+     * its name, and the network time as whatever the called service did not account for.
+     */
+    public void recordCall(String service, long nanos, String serverTiming) {
+        record(service, nanos);
+        if (serverTiming == null || this == NONE) {
+            return;
+        }
+        for (String metric : serverTiming.split(",")) {
+            String[] params = metric.trim().split(";");
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("dur=")) {
+                    try {
+                        long durationNanos = (long) (Double.parseDouble(param.substring(4)) * 1e6);
+                        record(service + "." + params[0].trim(), durationNanos);
+                        if (TOTAL.equals(params[0].trim())) {
+                            record(NETWORK, Math.max(0, nanos - durationNanos));
+                        }
+                    } catch (NumberFormatException e) {
+                        // a malformed entry is skipped, not worth failing the call
+                    }
+                }
+            }
+        }
+    }
+
+    boolean isStarted() {
+        return this != NONE;
+    }
+
+    // the total time since the request was started is added as the last stage
+    synchronized void forEach(BiConsumer<String, Long> action) {
+        stages.forEach(action);
+        action.accept(total, System.nanoTime() - startNanos);
+    }
+
+    String toHeader() {
+        StringBuilder header = new StringBuilder();
+        forEach((stage, nanos) -> {
+            if (header.length() > 0) {
+                header.append(", ");
+            }
+            header.append(stage).append(";dur=").append(String.format(Locale.ROOT, "%.3f", nanos / 1e6));
+        });
+        return header.toString();
+    }
+}
@@ -0,0 +1,58 @@
+package deors.demos.microservices.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class CachedJsonHttpMessageConverterTest {
+
+    private static final Type STRINGS = new ParameterizedTypeReference<List<String>>() { }.getType();
+
+    private static final Type INTEGERS = new ParameterizedTypeReference<List<Integer>>() { }.getType();
+
+    // the "cached" JSON of a string is the string itself in braces, to tell it from what Jackson writes
+    private final CachedJsonHttpMessageConverter<String> converter = new CachedJsonHttpMessageConverter<>(
+        new ObjectMapper(), String.class, value -> ("{" + value + "}").getBytes(StandardCharsets.UTF_8));
+
+    @Test
+    public void testWriteFromCachedForm() throws Exception {
+
+        MockHttpOutputMessage single = new MockHttpOutputMessage();
+        converter.write("a", String.class, MediaType.APPLICATION_JSON, single);
+        assertEquals("{a}", single.getBodyAsString(), "a single value should be written in its cached form");
+        assertEquals(MediaType.APPLICATION_JSON, single.getHeaders().getContentType(),
+            "the content type should be JSON");
+
+        MockHttpOutputMessage list = new MockHttpOutputMessage();
+        converter.write(List.of("a", "b"), STRINGS, MediaType.APPLICATION_JSON, list);
+        assertEquals("[{a},{b}]", list.getBodyAsString(), "a list should be written as an array of cached forms");
+    }
+
+    @Test
+    public void testOnlyWriteJsonOfValueType() {
+
+        assertTrue(converter.canWrite(STRINGS, List.class, MediaType.APPLICATION_JSON),
+            "lists of the value type should be written");
+        assertFalse(converter.canWrite(INTEGERS, List.class, MediaType.APPLICATION_JSON),
+            "lists of other types should be left to other converters");
+        assertFalse(converter.canWrite(Integer.class, MediaType.APPLICATION_JSON),
+            "other types should be left to other converters");
+        assertFalse(converter.canWrite(String.class, MediaType.APPLICATION_CBOR),
+            "other media types should be left to other converters");
+        assertFalse(converter.canRead(String.class, MediaType.APPLICATION_JSON),
+            "reading should be left to the regular Jackson converter");
+        assertFalse(converter.canRead(STRINGS, null, MediaType.APPLICATION_JSON),
+            "reading should be left to the regular Jackson converter");
+    }
+}
@@ -0,0 +1,95 @@
+package deors.demos.microservices.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.context.refresh.ContextRefresher;
+import org.springframework.mock.env.MockEnvironment;
+
+public class ConfigChangeListenerTest {
+
+    private static final List<String> SUBSCRIBED = List.of(
+        "event:subscribed", "data:{\"application\":\"bookrecedgeservice\",\"keys\":[]}", "");
+
+    private static final List<String> CHANGED = List.of(
+        ":heartbeat", "", "event:change", "data:{\"application\":\"bookrecedgeservice\",\"keys\":[\"defaultBookTitle\"]}", "");
+
+    private static final List<String> UNCHANGED = List.of(
+        "event:change", "data:{\"application\":\"bookrecedgeservice\",\"keys\":[]}", "");
+
+    private ContextRefresher contextRefresher;
+
+    private ConfigChangeListener listener;
+
+    @BeforeEach
+    public void createListener() {
+
+        contextRefresher = mock(ContextRefresher.class);
+        when(contextRefresher.refreshEnvironment()).thenReturn(Set.of("defaultBookTitle"));
+        listener = new ConfigChangeListener(contextRefresher, new MockEnvironment(), false,
+            "http://localhost:6868", 5000, "bookrecedgeservice");
+    }
+
+    @Test
+    public void testStreamUri() {
+
+        MockEnvironment environment = new MockEnvironment();
+        environment.setActiveProfiles("ci", "zone1");
+        ConfigChangeListener profiled = new ConfigChangeListener(contextRefresher, environment, false,
+            "http://configservice:6868", 5000, "bookrecedgeservice");
+
+        assertEquals("http://localhost:6868/changes/bookrecedgeservice/default", listener.getChanges().toString(),
+            "the default profile should be used when none is active");
+        assertEquals("http://configservice:6868/changes/bookrecedgeservice/ci,zone1", profiled.getChanges().toString(),
+            "every active profile should be part of the stream");
+    }
+
+    @Test
+    public void testRefreshOnChange() {
+
+        listener.consume(SUBSCRIBED.iterator());
+        verify(contextRefresher, never()).refreshEnvironment();
+
+        listener.consume(CHANGED.iterator());
+        verify(contextRefresher, times(1)).refreshEnvironment();
+    }
+
+    @Test
+    public void testNoRefreshWithoutKeys() {
+
+        listener.consume(UNCHANGED.iterator());
+
+        verify(contextRefresher, never()).refreshEnvironment();
+    }
+
+    @Test
+    public void testAnnouncedKeys() {
+
+        assertEquals(Set.of("defaultBookTitle", "logging.level.root"),
+            listener.keysOf("{\"application\":\"bookrecedgeservice\",\"keys\":[\"logging.level.root\",\"defaultBookTitle\"]}"),
+            "the names of the changed properties should be read from the event");
+        assertNull(listener.keysOf("{\"application\":\"bookrecedgeservice\"}"),
+            "an event without names should be taken as any property having changed");
+        assertNull(listener.keysOf("not json"),
+            "an unreadable event should be taken as any property having changed");
+    }
+
+    @Test
+    public void testRefreshOnReconnect() {
+
+        listener.consume(SUBSCRIBED.iterator());
+        listener.consume(SUBSCRIBED.iterator());
+
+        verify(contextRefresher, times(1)).refreshEnvironment();
+    }
+}
@@ -0,0 +1,81 @@
+package deors.demos.microservices.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+public class ServerTimingsTest {
+
+    private static ServerTimings started() {
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        ServerTimings.start(request, "edge");
+        return ServerTimings.of(request);
+    }
+
+    private static Map<String, Long> stagesOf(ServerTimings timings) {
+
+        Map<String, Long> stages = new LinkedHashMap<>();
+        timings.forEach(stages::put);
+        return stages;
+    }
+
+    @Test
+    public void testMergeDownstream() {
+
+        ServerTimings timings = started();
+
+        timings.recordCall("bookrec", TimeUnit.MILLISECONDS.toNanos(10),
+            "recommend;dur=2.5, db;desc=\"query\";dur=1.000, app;dur=4");
+
+        Map<String, Long> stages = stagesOf(timings);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(10), stages.get("bookrec"), "the call should be recorded as seen here");
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(2500), stages.get("bookrec.recommend"),
+            "downstream stages should be prefixed by the service name");
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1), stages.get("bookrec.db"),
+            "other parameters of a downstream stage should be skipped");
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(6), stages.get(ServerTimings.NETWORK),
+            "the time not accounted for downstream should be recorded as network time");
+    }
+
+    @Test
+    public void testSkipMalformed() {
+
+        ServerTimings timings = started();
+
+        timings.recordCall("bookrec", TimeUnit.MILLISECONDS.toNanos(10), "recommend;dur=fast, ;dur=, db");
+
+        Map<String, Long> stages = stagesOf(timings);
+        assertEquals(2, stages.size(), "only the call and the total should be recorded");
+    }
+
+    @Test
+    public void testHeader() {
+
+        ServerTimings timings = started();
+        timings.record("cb", TimeUnit.MICROSECONDS.toNanos(1500));
+        timings.record("cb", TimeUnit.MICROSECONDS.toNanos(500));
+
+        String header = timings.toHeader();
+
+        assertTrue(header.startsWith("cb;dur=2.000, "), "a stage timed twice should add up");
+        assertTrue(header.matches(".*, edge;dur=\\d+\\.\\d{3}"), "the total time should be reported last");
+    }
+
+    @Test
+    public void testBind() {
+
+        ServerTimings timings = started();
+
+        assertSame(timings, timings.bind(ServerTimings::current),
+            "bound timings should be found on the thread running the call");
+        assertTrue(!ServerTimings.current().isStarted(), "timings should be unbound after the call");
+    }
+}
@@ -0,0 +1,34 @@
+package deors.demos.microservices.configservice;
+
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.server.environment.EnvironmentRepository;
+import org.springframework.cloud.config.server.environment.SearchPathLocator;
+
+public class CachingEnvironmentRepository implements EnvironmentRepository, SearchPathLocator {
+
+    private final EnvironmentRepository delegate;
+
+    private final EnvironmentCache environmentCache;
+
+    public CachingEnvironmentRepository(EnvironmentRepository delegate, EnvironmentCache environmentCache) {
+        this.delegate = delegate;
+        this.environmentCache = environmentCache;
+    }
+
+    @Override
+    public Environment findOne(String application, String profile, String label) {
+        return findOne(application, profile, label, false);
+    }
+
+    @Override
+    public Environment findOne(String application, String profile, String label, boolean includeOrigin) {
+        return environmentCache.get(application, profile, label, includeOrigin,
+            () -> delegate.findOne(application, profile, label, includeOrigin));
+    }
+
+    // resources are served from the locations of the backing repository, and are not cached
+    @Override
+    public Locations getLocations(String application, String profile, String label) {
+        return ((SearchPathLocator) delegate).getLocations(application, profile, label);
+    }
+}
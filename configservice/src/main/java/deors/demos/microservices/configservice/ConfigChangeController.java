@@ -0,0 +1,23 @@
+package deors.demos.microservices.configservice;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+public class ConfigChangeController {
+
+    @Autowired
+    private ConfigChangeStream configChangeStream;
+
+    // more specific than the /{name}/{profiles}/{label} mapping of the config server
+    @GetMapping(path = "/changes/{application}/{profile}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter changes(@PathVariable String application, @PathVariable String profile,
+            @RequestParam(required = false) String label) {
+        return configChangeStream.subscribe(application, profile, label);
+    }
+}
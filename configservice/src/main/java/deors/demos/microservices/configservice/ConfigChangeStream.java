@@ -0,0 +1,231 @@
+package deors.demos.microservices.configservice;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.PropertySource;
+import org.springframework.cloud.config.server.environment.EnvironmentRepository;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Streams of configuration changes, by application, profile and label. The environment of
+ * every application with subscribers is resolved again periodically, which is served from
+ * the cache until it is invalidated or expires, and compared with the last one sent; when
+ * properties were added, removed or changed, their names are sent to the subscribers of
+ * that application only.
+ */
+@Component
+public class ConfigChangeStream {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConfigChangeStream.class);
+
+    public static final String CHANGE_EVENT = "change";
+
+    public static final String SUBSCRIBED_EVENT = "subscribed";
+
+    private final EnvironmentRepository environmentRepository;
+
+    private final long timeoutMillis;
+
+    private final Map<Key, Stream> streams = new ConcurrentHashMap<>();
+
+    private final Counter events;
+
+    @Autowired
+    public ConfigChangeStream(EnvironmentRepository environmentRepository, MeterRegistry meterRegistry,
+            @Value("${configservice.changes.timeoutMillis:600000}") long timeoutMillis) {
+        this.environmentRepository = environmentRepository;
+        this.timeoutMillis = timeoutMillis;
+        this.events = Counter.builder("configservice.changes.events")
+            .description("Configuration change events sent to subscribers")
+            .register(meterRegistry);
+        Gauge.builder("configservice.changes.subscribers", this, ConfigChangeStream::getSubscribers)
+            .description("Subscribers of configuration change streams")
+            .register(meterRegistry);
+    }
+
+    public SseEmitter subscribe(String application, String profile, String label) {
+        Key key = new Key(application, profile, label);
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        // added atomically, as streams without subscribers are removed while checking
+        Stream stream = streams.compute(key, (k, existing) -> {
+            Stream current = existing == null ? new Stream() : existing;
+            current.emitters.add(emitter);
+            return current;
+        });
+        emitter.onCompletion(() -> stream.emitters.remove(emitter));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> stream.emitters.remove(emitter));
+        synchronized (stream) {
+            if (stream.properties == null) {
+                // changes are reported from the moment of the first subscription
+                try {
+                    stream.update(resolve(key));
+                } catch (RuntimeException e) {
+                    stream.emitters.remove(emitter);
+                    throw e;
+                }
+            }
+        }
+        send(stream, emitter, SseEmitter.event().name(SUBSCRIBED_EVENT).data(payload(key, stream.version, Set.of())));
+        return emitter;
+    }
+
+    @Scheduled(fixedDelayString = "${configservice.changes.checkMillis:1000}")
+    public void check() {
+        streams.keySet().forEach(key -> {
+            Stream stream = streams.computeIfPresent(key, (k, existing) -> existing.emitters.isEmpty() ? null : existing);
+            if (stream == null) {
+                return;
+            }
+            Set<String> changed;
+            synchronized (stream) {
+                if (stream.properties == null) {
+                    return;
+                }
+                Environment environment;
+                try {
+                    environment = resolve(key);
+                } catch (RuntimeException e) {
+                    logger.debug("configuration of {} could not be resolved, will check again later", key, e);
+                    return;
+                }
+                Map<String, Object> before = stream.properties;
+                stream.update(environment);
+                changed = changedKeys(before, stream.properties);
+            }
+            if (changed.isEmpty()) {
+                return;
+            }
+            logger.info("configuration of {} changed: {}", key, changed);
+            Map<String, Object> payload = payload(key, stream.version, changed);
+            for (SseEmitter emitter : stream.emitters) {
+                send(stream, emitter, SseEmitter.event().name(CHANGE_EVENT).data(payload));
+                events.increment();
+            }
+        });
+    }
+
+    // proxies and load balancers close connections that look idle
+    @Scheduled(fixedDelayString = "${configservice.changes.heartbeatMillis:30000}")
+    public void heartbeat() {
+        streams.values().forEach(stream -> stream.emitters.forEach(
+            emitter -> send(stream, emitter, SseEmitter.event().comment("heartbeat"))));
+    }
+
+    private void send(Stream stream, SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            stream.emitters.remove(emitter);
+            emitter.completeWithError(e);
+        }
+    }
+
+    private Environment resolve(Key key) {
+        return environmentRepository.findOne(key.application, key.profile, key.label);
+    }
+
+    // properties of the first property sources take precedence
+    static Map<String, Object> propertiesOf(Environment environment) {
+        List<PropertySource> propertySources = environment.getPropertySources();
+        Map<String, Object> properties = new HashMap<>();
+        for (int i = propertySources.size() - 1; i >= 0; i--) {
+            propertySources.get(i).getSource().forEach((name, value) -> properties.put(String.valueOf(name), value));
+        }
+        return properties;
+    }
+
+    static Set<String> changedKeys(Map<String, Object> before, Map<String, Object> after) {
+        Set<String> changed = new TreeSet<>();
+        before.forEach((name, value) -> {
+            if (!Objects.equals(value, after.get(name))) {
+                changed.add(name);
+            }
+        });
+        after.keySet().stream().filter(name -> !before.containsKey(name)).forEach(changed::add);
+        return changed;
+    }
+
+    private static Map<String, Object> payload(Key key, String version, Set<String> keys) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("application", key.application);
+        payload.put("profile", key.profile);
+        payload.put("label", key.label);
+        payload.put("version", version);
+        payload.put("keys", keys);
+        return payload;
+    }
+
+    public int getSubscribers() {
+        return streams.values().stream().mapToInt(stream -> stream.emitters.size()).sum();
+    }
+
+    private static class Stream {
+
+        private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+        private Map<String, Object> properties;
+
+        private String version;
+
+        private void update(Environment environment) {
+            properties = propertiesOf(environment);
+            version = environment.getVersion();
+        }
+    }
+
+    private static class Key {
+
+        private final String application;
+
+        private final String profile;
+
+        private final String label;
+
+        private Key(String application, String profile, String label) {
+            this.application = application;
+            this.profile = profile;
+            this.label = label;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return application.equals(key.application) && profile.equals(key.profile)
+                && Objects.equals(label, key.label);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(application, profile, label);
+        }
+
+        @Override
+        public String toString() {
+            return application + "/" + profile + (label == null ? "" : "/" + label);
+        }
+    }
+}
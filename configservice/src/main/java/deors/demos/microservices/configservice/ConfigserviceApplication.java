@@ -5,6 +5,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 
 @SpringBootApplication
 @org.springframework.cloud.config.server.EnableConfigServer
+@org.springframework.scheduling.annotation.EnableScheduling
 public class ConfigserviceApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,241 @@
+package deors.demos.microservices.configservice;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Resolved environments by application, profile and label. Concurrent requests for an
+ * environment that is not cached wait for a single resolution instead of resolving it
+ * again each. Entries expire after the time to live, are dropped when an environment
+ * resolved later for the same label comes from another version (a new commit in the
+ * git backend), and all of them are dropped on invalidation. Keys come from the request
+ * path, so the cache is bounded: beyond the maximum number of entries the least recently
+ * used one is evicted, and expired entries are swept periodically.
+ */
+@Component
+public class EnvironmentCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(EnvironmentCache.class);
+
+    private final boolean enabled;
+
+    private final long ttlNanos;
+
+    private final int maxEntries;
+
+    private final Map<String, Entry> entries;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    private final Counter coalesced;
+
+    private final Counter invalidations;
+
+    private final Counter evictions;
+
+    private final Timer loads;
+
+    @Autowired
+    public EnvironmentCache(MeterRegistry meterRegistry,
+            @Value("${configservice.cache.enabled:true}") boolean enabled,
+            @Value("${configservice.cache.ttlMillis:30000}") long ttlMillis,
+            @Value("${configservice.cache.maxEntries:1000}") int maxEntries) {
+        this.enabled = enabled;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxEntries = maxEntries;
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > EnvironmentCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        });
+        this.hits = requests(meterRegistry, "hit");
+        this.misses = requests(meterRegistry, "miss");
+        this.coalesced = requests(meterRegistry, "coalesced");
+        this.invalidations = Counter.builder("configservice.cache.invalidations")
+            .description("Invalidations of every resolved environment")
+            .register(meterRegistry);
+        this.evictions = Counter.builder("configservice.cache.evictions")
+            .description("Resolved environments evicted as least recently used or expired")
+            .register(meterRegistry);
+        this.loads = Timer.builder("configservice.cache.load")
+            .description("Time to resolve an environment that was not cached")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        Gauge.builder("configservice.cache.size", entries, Map::size)
+            .description("Resolved environments in the cache")
+            .register(meterRegistry);
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("configservice.cache.requests")
+            .tag("result", result)
+            .description("Requests for resolved environments, by result")
+            .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Environment get(String application, String profile, String label, boolean includeOrigin,
+            Supplier<Environment> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        String key = application + '/' + profile + '/' + label + (includeOrigin ? "/origin" : "");
+        Entry entry = entries.get(key);
+        if (entry != null && isFresh(entry)) {
+            if (entry.future.isDone()) {
+                hits.increment();
+            } else {
+                coalesced.increment();
+            }
+            return copyOf(join(entry));
+        }
+        Entry candidate = new Entry(label, generation.get());
+        Entry current = entries.compute(key, (k, existing) -> existing != null && isFresh(existing) ? existing : candidate);
+        if (current != candidate) {
+            coalesced.increment();
+            return copyOf(join(current));
+        }
+        misses.increment();
+        load(key, candidate, loader);
+        return copyOf(join(candidate));
+    }
+
+    private void load(String key, Entry entry, Supplier<Environment> loader) {
+        long start = System.nanoTime();
+        try {
+            Environment environment = loader.get();
+            entry.loadedAt = System.nanoTime();
+            loads.record(entry.loadedAt - start, TimeUnit.NANOSECONDS);
+            entry.future.complete(environment);
+            evictOtherVersions(entry, environment.getVersion());
+        } catch (RuntimeException | Error e) {
+            // failures are not cached, the next request tries again
+            entries.remove(key, entry);
+            entry.future.completeExceptionally(e);
+        }
+    }
+
+    private void evictOtherVersions(Entry loaded, String version) {
+        if (version == null) {
+            return;
+        }
+        entries.values().removeIf(entry -> entry != loaded && entry.future.isDone()
+            && Objects.equals(entry.label, loaded.label)
+            && !version.equals(entry.future.getNow(null).getVersion()));
+    }
+
+    private boolean isFresh(Entry entry) {
+        if (entry.generation != generation.get() || entry.future.isCompletedExceptionally()) {
+            return false;
+        }
+        return !entry.future.isDone() || System.nanoTime() - entry.loadedAt < ttlNanos;
+    }
+
+    private static Environment join(Entry entry) {
+        try {
+            return entry.future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    // callers may add property sources to the environment they get, e.g. overrides
+    private static Environment copyOf(Environment environment) {
+        Environment copy = new Environment(environment);
+        copy.addAll(environment.getPropertySources());
+        return copy;
+    }
+
+    @Scheduled(fixedDelayString = "${configservice.cache.sweepMillis:60000}")
+    public void sweep() {
+        entries.values().removeIf(entry -> {
+            if (entry.future.isDone() && !isFresh(entry)) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entries.clear();
+        invalidations.increment();
+        logger.info("resolved environments invalidated");
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> environments = new LinkedHashMap<>();
+        entries.forEach((key, entry) -> {
+            Environment environment = entry.future.getNow(null);
+            if (environment != null) {
+                environments.put(key, Map.of(
+                    "version", String.valueOf(environment.getVersion()),
+                    "ageMillis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - entry.loadedAt)));
+            }
+        });
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("enabled", enabled);
+        snapshot.put("ttlMillis", TimeUnit.NANOSECONDS.toMillis(ttlNanos));
+        snapshot.put("maxEntries", maxEntries);
+        snapshot.put("hits", (long) hits.count());
+        snapshot.put("misses", (long) misses.count());
+        snapshot.put("coalesced", (long) coalesced.count());
+        snapshot.put("environments", environments);
+        return snapshot;
+    }
+
+    private static class Entry {
+
+        private final CompletableFuture<Environment> future = new CompletableFuture<>();
+
+        private final String label;
+
+        private final long generation;
+
+        private volatile long loadedAt;
+
+        private Entry(String label, long generation) {
+            this.label = label;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package deors.demos.microservices.configservice;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.cloud.config.server.environment.SearchPathCompositeEnvironmentRepository;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class EnvironmentCacheConfiguration {
+
+    // the environment controller takes the primary repository, which combines every backend,
+    // so caching it is enough; static and lazy, as post processors are created before other beans
+    @Bean
+    public static BeanPostProcessor cachingEnvironmentRepositoryPostProcessor(
+            ObjectProvider<EnvironmentCache> environmentCache) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof SearchPathCompositeEnvironmentRepository) {
+                    return new CachingEnvironmentRepository((SearchPathCompositeEnvironmentRepository) bean,
+                        environmentCache.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+}
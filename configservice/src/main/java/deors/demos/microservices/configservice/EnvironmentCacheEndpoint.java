@@ -0,0 +1,28 @@
+package deors.demos.microservices.configservice;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+@Component
+@Endpoint(id = "environmentcache")
+public class EnvironmentCacheEndpoint {
+
+    @Autowired
+    private EnvironmentCache environmentCache;
+
+    @ReadOperation
+    public Map<String, Object> environmentCache() {
+        return environmentCache.snapshot();
+    }
+
+    // e.g. from a webhook of the git repository, so that new commits are served at once
+    @DeleteOperation
+    public void invalidate() {
+        environmentCache.invalidateAll();
+    }
+}
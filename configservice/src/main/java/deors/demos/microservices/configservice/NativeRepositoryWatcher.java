@@ -0,0 +1,123 @@
+package deors.demos.microservices.configservice;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.config.server.environment.NativeEnvironmentRepository;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Watches the file system locations of the native backend, and invalidates every resolved
+ * environment when a file in them is created, changed or deleted. Locations are watched
+ * with their subdirectories; placeholders like {application} are watched from the
+ * directory that contains them.
+ */
+@Component
+@Profile("native")
+public class NativeRepositoryWatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(NativeRepositoryWatcher.class);
+
+    private static final String FILE_PREFIX = "file:";
+
+    private final List<Path> directories = new ArrayList<>();
+
+    private final EnvironmentCache environmentCache;
+
+    private WatchService watchService;
+
+    @Autowired
+    public NativeRepositoryWatcher(NativeEnvironmentRepository nativeEnvironmentRepository,
+            EnvironmentCache environmentCache) {
+        this.environmentCache = environmentCache;
+        for (String location : nativeEnvironmentRepository.getSearchLocations()) {
+            // classpath locations cannot change while the service runs
+            if (location.startsWith(FILE_PREFIX)) {
+                String path = location.substring(FILE_PREFIX.length());
+                int placeholder = path.indexOf('{');
+                if (placeholder >= 0) {
+                    path = path.substring(0, path.lastIndexOf('/', placeholder) + 1);
+                }
+                directories.add(Paths.get(path.isEmpty() ? "." : path).toAbsolutePath().normalize());
+            }
+        }
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        for (Path directory : directories) {
+            register(directory);
+        }
+        Thread thread = new Thread(this::watch, "native-repository-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        watchService.close();
+    }
+
+    private void register(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            logger.warn("native repository location " + directory + " is not a directory and will not be watched");
+            return;
+        }
+        try (Stream<Path> tree = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) tree.filter(Files::isDirectory)::iterator) {
+                path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            }
+        }
+        logger.info("watching native repository location " + directory);
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path directory = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                        Path created = directory.resolve((Path) event.context());
+                        if (Files.isDirectory(created)) {
+                            register(created);
+                        }
+                    }
+                }
+                key.reset();
+                // a single invalidation for every batch of events, as editors often write a file in several steps
+                environmentCache.invalidateAll();
+            }
+        } catch (ClosedWatchServiceException e) {
+            logger.debug("native repository watcher stopped");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.error("native repository watcher failed, changes will only be seen when cached environments expire", e);
+        }
+    }
+
+    public List<Path> getDirectories() {
+        return directories;
+    }
+}
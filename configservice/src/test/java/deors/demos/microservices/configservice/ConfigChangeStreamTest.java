@@ -0,0 +1,83 @@
+package deors.demos.microservices.configservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.PropertySource;
+import org.springframework.cloud.config.server.environment.EnvironmentRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ConfigChangeStreamTest {
+
+    private final Map<String, Map<String, Object>> store = new HashMap<>();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final EnvironmentRepository repository = (application, profile, label) -> {
+        Environment environment = new Environment(application, profile);
+        environment.add(new PropertySource(application + ".properties", store.getOrDefault(application, Map.of())));
+        environment.add(new PropertySource("application.properties", store.getOrDefault("application", Map.of())));
+        return environment;
+    };
+
+    private double events() {
+
+        return meterRegistry.get("configservice.changes.events").counter().count();
+    }
+
+    @Test
+    public void testChangedKeys() {
+
+        Set<String> changed = ConfigChangeStream.changedKeys(
+            Map.of("defaultBookId", 1L, "defaultBookTitle", "robots of dawn", "bookrec.maxCount", 100),
+            Map.of("defaultBookId", 1L, "defaultBookTitle", "the caves of steel", "bookrec.batchSize", 10));
+
+        assertEquals(Set.of("defaultBookTitle", "bookrec.maxCount", "bookrec.batchSize"), changed,
+            "changed, removed and added properties should be reported");
+    }
+
+    @Test
+    public void testPrecedence() {
+
+        store.put("bookrecservice", Map.of("defaultBookTitle", "robots of dawn"));
+        store.put("application", Map.of("defaultBookTitle", "foundation", "server.port", 0));
+
+        Map<String, Object> properties = ConfigChangeStream.propertiesOf(repository.findOne("bookrecservice", "default", null));
+
+        assertEquals("robots of dawn", properties.get("defaultBookTitle"),
+            "properties of the application should prevail over shared ones");
+        assertEquals(0, properties.get("server.port"), "shared properties should be included");
+    }
+
+    @Test
+    public void testTargetedEvents() {
+
+        store.put("bookrecservice", Map.of("defaultBookTitle", "robots of dawn"));
+        store.put("bookrecedgeservice", Map.of("defaultBookTitle", "robots of dawn"));
+        ConfigChangeStream stream = new ConfigChangeStream(repository, meterRegistry, 60000);
+        stream.subscribe("bookrecservice", "default", null);
+        stream.subscribe("bookrecservice", "default", null);
+        stream.subscribe("bookrecedgeservice", "default", null);
+
+        stream.check();
+        assertEquals(0, events(), "nothing should be sent while the configuration does not change");
+
+        store.put("bookrecservice", Map.of("defaultBookTitle", "the caves of steel"));
+        stream.check();
+        assertEquals(2, events(), "only the subscribers of the changed application should be notified");
+
+        store.put("application", Map.of("management.endpoints.web.exposure.include", "*"));
+        stream.check();
+        assertEquals(5, events(), "every subscriber should be notified of changes to shared properties");
+
+        stream.check();
+        assertEquals(5, events(), "changes should be sent once");
+        assertEquals(3, stream.getSubscribers(), "subscribers should stay connected");
+    }
+}
@@ -0,0 +1,118 @@
+package deors.demos.microservices.configservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.server.environment.EnvironmentRepository;
+import org.springframework.cloud.config.server.environment.NativeEnvironmentProperties;
+import org.springframework.cloud.config.server.environment.NativeEnvironmentRepository;
+import org.springframework.core.env.StandardEnvironment;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class EnvironmentCacheBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(EnvironmentCacheBenchmarkTest.class);
+
+    private static final int CLIENTS = Integer.getInteger("test.configcache.clients", 60);
+
+    private static final String[] APPLICATIONS = { "bookrecservice", "bookrecedgeservice", "eurekaservice" };
+
+    @TempDir
+    Path configStore;
+
+    private NativeEnvironmentRepository nativeRepository;
+
+    @BeforeEach
+    public void createConfigStore() throws Exception {
+
+        Files.writeString(configStore.resolve("application.properties"), "management.endpoints.web.exposure.include = *\n");
+        for (String application : APPLICATIONS) {
+            Files.writeString(configStore.resolve(application + ".properties"), "server.port = 0\n");
+        }
+        NativeEnvironmentProperties properties = new NativeEnvironmentProperties();
+        properties.setSearchLocations(new String[] { "file:" + configStore + "/" });
+        nativeRepository = new NativeEnvironmentRepository(new StandardEnvironment(), properties);
+    }
+
+    // every client asks for the environment of its application at the same time, as when they all start at once
+    private static List<Long> startClients(EnvironmentRepository repository) throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> fetches = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            String application = APPLICATIONS[i % APPLICATIONS.length];
+            fetches.add(executor.submit(() -> {
+                start.await();
+                long begin = System.nanoTime();
+                Environment environment = repository.findOne(application, "default", null);
+                assertEquals(2, environment.getPropertySources().size(),
+                    "application and shared properties should be resolved for " + application);
+                return System.nanoTime() - begin;
+            }));
+        }
+        start.countDown();
+        List<Long> latencies = new ArrayList<>();
+        for (Future<Long> fetch : fetches) {
+            latencies.add(fetch.get());
+        }
+        executor.shutdown();
+        Collections.sort(latencies);
+        return latencies;
+    }
+
+    private static String summary(List<Long> latencies) {
+
+        return "p50 " + millis(latencies, 0.5) + " ms, p99 " + millis(latencies, 0.99)
+            + " ms, max " + millis(latencies, 1.0) + " ms";
+    }
+
+    private static long millis(List<Long> sorted, double percentile) {
+
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return TimeUnit.NANOSECONDS.toMillis(sorted.get(Math.max(index, 0)));
+    }
+
+    @Test
+    public void testConcurrentStartup() throws Exception {
+
+        // warm up the native repository, so that class loading is not measured
+        nativeRepository.findOne("bookrecservice", "default", null);
+
+        EnvironmentCache uncached = new EnvironmentCache(new SimpleMeterRegistry(), false, 30000, 1000);
+        List<Long> uncachedLatencies = startClients(new CachingEnvironmentRepository(nativeRepository, uncached));
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        EnvironmentCache cached = new EnvironmentCache(meterRegistry, true, 30000, 1000);
+        List<Long> cachedLatencies = startClients(new CachingEnvironmentRepository(nativeRepository, cached));
+        List<Long> warmLatencies = startClients(new CachingEnvironmentRepository(nativeRepository, cached));
+
+        logger.info(CLIENTS + " clients starting at once, without cache: " + summary(uncachedLatencies));
+        logger.info(CLIENTS + " clients starting at once, empty cache: " + summary(cachedLatencies));
+        logger.info(CLIENTS + " clients starting at once, warm cache: " + summary(warmLatencies));
+
+        long resolutions = meterRegistry.get("configservice.cache.load").timer().count();
+        assertEquals(APPLICATIONS.length, resolutions,
+            "every environment should be resolved once, however many clients ask for it");
+        assertTrue(millis(warmLatencies, 1.0) <= millis(uncachedLatencies, 0.5),
+            "environments served from the cache should be faster than resolving them");
+    }
+}
@@ -0,0 +1,196 @@
+package deors.demos.microservices.configservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.environment.PropertySource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class EnvironmentCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private static Environment environment(String application, String version) {
+
+        Environment environment = new Environment(application, new String[] { "default" }, "main", version, null);
+        environment.add(new PropertySource(application + ".properties", Map.of("defaultBookId", 1L)));
+        return environment;
+    }
+
+    private Supplier<Environment> loader(String application, String version) {
+
+        return () -> {
+            loads.incrementAndGet();
+            return environment(application, version);
+        };
+    }
+
+    @Test
+    public void testHit() {
+
+        EnvironmentCache cache = new EnvironmentCache(new SimpleMeterRegistry(), true, 60000, 1000);
+
+        Environment first = cache.get("bookrecservice", "default", "main", false, loader("bookrecservice", "a"));
+        Environment second = cache.get("bookrecservice", "default", "main", false, loader("bookrecservice", "a"));
+
+        assertEquals(1, loads.get(), "the environment should be resolved once");
+        assertEquals(first.getPropertySources(), second.getPropertySources(), "cached property sources should be returned");
+        assertNotSame(first, second, "every caller should get its own copy of the environment");
+    }
+
+    @Test
+    public void testKeys() {
+
+        EnvironmentCache cache = new EnvironmentCache(new SimpleMeterRegistry(), true, 60000, 1000);
+
+        cache.get("bookrecservice", "default", "main", false, loader("bookrecservice", "a"));
+        cache.get("bookrecedgeservice", "default", "main", false, loader("bookrecedgeservice", "a"));
+        cache.get("bookrecservice", "ci", "main", false, loader("bookrecservice", "a"));
+        cache.get("bookrecservice", "default", "main", true, loader("bookrecservice", "a"));
+
+        assertEquals(4, loads.get(), "application, profile, label and origins should be part of the key");
+    }
+
+    @Test
+    public void testSingleFlight() throws Exception {
+
+        EnvironmentCache cache = new EnvironmentCache(new SimpleMeterRegistry(), true, 60000, 1000);
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<Environment> slowLoader = () -> {
+            loads.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return environment("bookrecservice", "a");
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Environment>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> cache.get("bookrecservice", "default", "main", false, slowLoader)));
+        }
+        Thread.sleep(200);
+        release.countDown();
+        for (Future<Environment> result : results) {
+            assertEquals("bookrecservice", result.get().getName(), "every caller should get the environment");
+        }
+        executor.shutdown();
+
+        assertEquals(1, loads.get(), "concurrent requests should wait for a single resolution");
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+
+        EnvironmentCache cache = new EnvironmentCache(new SimpleMeterRegistry(), true, 50, 1000);
+
+        cache.get("bookrecservice", "default", "main", false, loader("bookrecservice", "a"));
+        Thread.sleep(100);
+        cache.get("bookrecservice", "default", "main", false, loader("bookrecservice", "a"));
+
+        assertEquals(2, loads.get(), "expired environments should be resolved again");
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        EnvironmentCache cache = new EnvironmentCache(meterRegistry, true, 60000, 2);
+
+        cache.get("bookrecservice", "default", "main", false, loader("bookrecservice", "a"));
+        cache.get("bookrecedgeservice", "default", "main", false, loader("bookrecedgeservice", "a"));
+        cache.get("bookrecservice", "default", "main", false, loader("bookrecservice", "a"));
+        cache.get("probe", "default", "main", false, loader("probe", "a"));
+        cache.get("bookrecservice", "default", "main", false, loader("bookrecservice", "a"));
+        cache.get("bookrecedgeservice", "default", "main", false, loader("bookrecedgeservice", "a"));
+
+        assertEquals(4, loads.get(), "the least recently used environment should be evicted beyond the maximum");
+        assertEquals(2, meterRegistry.get("configservice.cache.size").gauge().value(),
+            "the cache should not grow beyond the maximum");
+        assertEquals(2, meterRegistry.get("configservice.cache.evictions").counter().count(),
+            "evictions should be counted");
+    }
+
+    @Test
+    public void testSweepExpired() throws Exception {
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        EnvironmentCache cache = new EnvironmentCache(meterRegistry, true, 50, 1000);
+
+        cache.get("bookrecservice", "default", "main", false, loader("bookrecservice", "a"));
+        cache.get("probe", "default", "main", false, loader("probe", "a"));
+        Thread.sleep(100);
+        cache.get("bookrecservice", "default", "main", false, loader("bookrecservice", "a"));
+        cache.sweep();
+
+        assertEquals(1, meterRegistry.get("configservice.cache.size").gauge().value(),
+            "expired environments should be swept");
+        assertEquals(1, meterRegistry.get("configservice.cache.evictions").counter().count(),
+            "swept environments should be counted as evictions");
+    }
+
+    @Test
+    public void testInvalidateAll() {
+
+        EnvironmentCache cache = new EnvironmentCache(new SimpleMeterRegistry(), true, 60000, 1000);
+
+        cache.get("bookrecservice", "default", "main", false, loader("bookrecservice", "a"));
+        cache.invalidateAll();
+        cache.get("bookrecservice", "default", "main", false, loader("bookrecservice", "a"));
+
+        assertEquals(2, loads.get(), "invalidated environments should be resolved again");
+    }
+
+    @Test
+    public void testNewVersion() {
+
+        EnvironmentCache cache = new EnvironmentCache(new SimpleMeterRegistry(), true, 60000, 1000);
+
+        cache.get("bookrecservice", "default", "main", false, loader("bookrecservice", "a"));
+        cache.get("bookrecedgeservice", "default", "main", false, loader("bookrecedgeservice", "b"));
+        Environment environment = cache.get("bookrecservice", "default", "main", false, loader("bookrecservice", "b"));
+
+        assertEquals(3, loads.get(), "environments of an older version should be dropped when a new one is seen");
+        assertEquals("b", environment.getVersion(), "the new version should be returned");
+    }
+
+    @Test
+    public void testFailureNotCached() {
+
+        EnvironmentCache cache = new EnvironmentCache(new SimpleMeterRegistry(), true, 60000, 1000);
+
+        assertThrows(IllegalStateException.class, () -> cache.get("bookrecservice", "default", "main", false, () -> {
+            throw new IllegalStateException("repository not available");
+        }), "failures should be thrown to the caller");
+        cache.get("bookrecservice", "default", "main", false, loader("bookrecservice", "a"));
+
+        assertEquals(1, loads.get(), "failures should not be cached");
+    }
+
+    @Test
+    public void testDisabled() {
+
+        EnvironmentCache cache = new EnvironmentCache(new SimpleMeterRegistry(), false, 60000, 1000);
+
+        cache.get("bookrecservice", "default", "main", false, loader("bookrecservice", "a"));
+        cache.get("bookrecservice", "default", "main", false, loader("bookrecservice", "a"));
+
+        assertEquals(2, loads.get(), "every request should be resolved when the cache is disabled");
+    }
+}
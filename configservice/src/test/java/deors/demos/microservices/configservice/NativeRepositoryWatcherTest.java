@@ -0,0 +1,73 @@
+package deors.demos.microservices.configservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.cloud.config.environment.Environment;
+import org.springframework.cloud.config.server.environment.NativeEnvironmentProperties;
+import org.springframework.cloud.config.server.environment.NativeEnvironmentRepository;
+import org.springframework.core.env.StandardEnvironment;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class NativeRepositoryWatcherTest {
+
+    @TempDir
+    Path configStore;
+
+    private NativeEnvironmentRepository nativeRepository(String... searchLocations) {
+
+        NativeEnvironmentProperties properties = new NativeEnvironmentProperties();
+        properties.setSearchLocations(searchLocations);
+        return new NativeEnvironmentRepository(new StandardEnvironment(), properties);
+    }
+
+    @Test
+    public void testLocations() {
+
+        NativeRepositoryWatcher watcher = new NativeRepositoryWatcher(nativeRepository(
+            "classpath:/config/", "file:" + configStore + "/", "file:" + configStore + "/{application}/"),
+            new EnvironmentCache(new SimpleMeterRegistry(), true, 60000, 1000));
+
+        assertEquals(2, watcher.getDirectories().size(), "only file locations should be watched");
+        assertTrue(watcher.getDirectories().stream().allMatch(configStore::equals),
+            "placeholders should be watched from the directory that contains them");
+    }
+
+    @Test
+    public void testChangeInvalidates() throws Exception {
+
+        Path file = configStore.resolve("bookrecservice.properties");
+        Files.writeString(file, "defaultBookTitle = robots of dawn\n");
+        NativeEnvironmentRepository repository = nativeRepository("file:" + configStore + "/");
+        EnvironmentCache cache = new EnvironmentCache(new SimpleMeterRegistry(), true, 60000, 1000);
+        CachingEnvironmentRepository cachingRepository = new CachingEnvironmentRepository(repository, cache);
+        NativeRepositoryWatcher watcher = new NativeRepositoryWatcher(repository, cache);
+        watcher.start();
+        try {
+            assertEquals("robots of dawn", title(cachingRepository), "the initial value should be served");
+
+            Files.writeString(file, "defaultBookTitle = the caves of steel\n");
+
+            String title = null;
+            for (int i = 0; i < 100 && !"the caves of steel".equals(title); i++) {
+                Thread.sleep(50);
+                title = title(cachingRepository);
+            }
+            assertEquals("the caves of steel", title, "a changed file should be served without waiting for expiry");
+        } finally {
+            watcher.stop();
+        }
+    }
+
+    private static String title(CachingEnvironmentRepository repository) {
+
+        Environment environment = repository.findOne("bookrecservice", "default", null);
+        return String.valueOf(environment.getPropertySources().get(0).getSource().get("defaultBookTitle"));
+    }
+}
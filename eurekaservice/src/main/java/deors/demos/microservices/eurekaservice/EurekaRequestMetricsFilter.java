@@ -0,0 +1,80 @@
+package deors.demos.microservices.eurekaservice;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// the Eureka REST API is served by a Jersey filter, which the Spring MVC request metrics do not see
+public class EurekaRequestMetricsFilter extends OncePerRequestFilter {
+
+    private static final String PREFIX = "/eureka";
+
+    private static final String APPS = "/apps";
+
+    private final MeterRegistry meterRegistry;
+
+    public EurekaRequestMetricsFilter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            Timer.builder("eureka.server.requests")
+                .tag("operation", operationOf(request.getMethod(),
+                    request.getRequestURI().substring(request.getContextPath().length())))
+                .tag("status", String.valueOf(response.getStatus()))
+                .description("Requests to the Eureka REST API, by operation")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    static String operationOf(String method, String uri) {
+        if (!uri.startsWith(PREFIX)) {
+            return "other";
+        }
+        String path = uri.substring(PREFIX.length());
+        if (path.startsWith("/peerreplication")) {
+            return "replication";
+        }
+        if (!path.startsWith(APPS)) {
+            return "other";
+        }
+        String[] segments = path.substring(APPS.length()).split("/");
+        int depth = segments.length - 1;
+        if ("GET".equals(method)) {
+            if (depth <= 0) {
+                return "fetch";
+            }
+            return depth == 1 && "delta".equals(segments[1]) ? "fetch.delta" : "fetch.application";
+        }
+        if ("POST".equals(method) && depth == 1) {
+            return "register";
+        }
+        if ("PUT".equals(method) && depth == 2) {
+            return "renew";
+        }
+        if ("DELETE".equals(method) && depth == 2) {
+            return "cancel";
+        }
+        if (depth == 3 && "status".equals(segments[3])) {
+            return "status";
+        }
+        return "other";
+    }
+}
@@ -0,0 +1,69 @@
+package deors.demos.microservices.eurekaservice;
+
+import java.util.Locale;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.netflix.eureka.registry.PeerAwareInstanceRegistry;
+import com.netflix.eureka.registry.PeerAwareInstanceRegistryImpl;
+import com.netflix.eureka.registry.ResponseCache;
+import com.netflix.eureka.registry.ResponseCacheImpl;
+import com.netflix.eureka.util.EurekaMonitors;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Publishes the counters that Eureka keeps for every registry operation, and the size of the
+ * registry and of its response cache, as Micrometer meters. Full and delta fetches are served
+ * from the response cache; the cache misses counted by Eureka are the payloads built from the
+ * registry, so the hit ratio is the share of fetches that did not need one.
+ */
+@Component
+public class EurekaServerMetrics {
+
+    private final PeerAwareInstanceRegistryImpl registry;
+
+    @Autowired
+    public EurekaServerMetrics(MeterRegistry meterRegistry, PeerAwareInstanceRegistry registry) {
+        this.registry = (PeerAwareInstanceRegistryImpl) registry;
+        for (EurekaMonitors monitor : EurekaMonitors.values()) {
+            FunctionCounter.builder("eureka.server.operations", monitor, EurekaMonitors::getCount)
+                .tag("operation", monitor.name().toLowerCase(Locale.ROOT))
+                .description("Registry operations, by operation")
+                .register(meterRegistry);
+        }
+        Gauge.builder("eureka.server.registry.instances", this.registry, PeerAwareInstanceRegistryImpl::getLocalRegistrySize)
+            .description("Instances registered in this server")
+            .register(meterRegistry);
+        Gauge.builder("eureka.server.registry.renews", this.registry, PeerAwareInstanceRegistryImpl::getNumOfRenewsInLastMin)
+            .description("Heartbeats received in the last minute")
+            .register(meterRegistry);
+        Gauge.builder("eureka.server.registry.renews.threshold", this.registry,
+                PeerAwareInstanceRegistryImpl::getNumOfRenewsPerMinThreshold)
+            .description("Heartbeats per minute below which expired leases are kept (self preservation)")
+            .register(meterRegistry);
+        Gauge.builder("eureka.server.registry.leaseExpiration", this.registry, r -> r.isLeaseExpirationEnabled() ? 1 : 0)
+            .description("Whether expired leases are being evicted (0 while in self preservation)")
+            .register(meterRegistry);
+        Gauge.builder("eureka.server.responseCache.size", this, EurekaServerMetrics::getResponseCacheSize)
+            .description("Payloads in the read-write response cache")
+            .register(meterRegistry);
+        Gauge.builder("eureka.server.responseCache.hitRatio", this, EurekaServerMetrics::getResponseCacheHitRatio)
+            .description("Share of full and delta fetches served without building the payload from the registry")
+            .register(meterRegistry);
+    }
+
+    public int getResponseCacheSize() {
+        ResponseCache responseCache = registry.getResponseCache();
+        return responseCache instanceof ResponseCacheImpl ? ((ResponseCacheImpl) responseCache).getCurrentSize() : 0;
+    }
+
+    public double getResponseCacheHitRatio() {
+        long fetches = EurekaMonitors.GET_ALL.getCount() + EurekaMonitors.GET_ALL_DELTA.getCount();
+        long misses = EurekaMonitors.GET_ALL_CACHE_MISS.getCount() + EurekaMonitors.GET_ALL_CACHE_MISS_DELTA.getCount();
+        return fetches == 0 ? 0 : Math.max(0, 1 - (double) misses / fetches);
+    }
+}
@@ -2,12 +2,38 @@ package deors.demos.microservices.eurekaservice;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
 
-@SpringBootApplication
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@SpringBootApplication(scanBasePackages = { "deors.demos.microservices.eurekaservice", "deors.demos.microservices.common" })
 @org.springframework.cloud.netflix.eureka.server.EnableEurekaServer
 public class EurekaserviceApplication {
 
     public static void main(String[] args) {
         SpringApplication.run(EurekaserviceApplication.class, args);
     }
+
+    // ahead of the Jersey filter, which answers the request without passing it on
+    @Bean
+    FilterRegistrationBean<EurekaRequestMetricsFilter> eurekaRequestMetricsFilter(MeterRegistry meterRegistry) {
+        FilterRegistrationBean<EurekaRequestMetricsFilter> registration =
+            new FilterRegistrationBean<>(new EurekaRequestMetricsFilter(meterRegistry));
+        registration.addUrlPatterns("/eureka/*");
+        registration.setOrder(0);
+        return registration;
+    }
+
+    @Bean
+    FilterRegistrationBean<PeerReplicationMetricsFilter> peerReplicationMetricsFilter(MeterRegistry meterRegistry,
+            ObjectMapper objectMapper) {
+        FilterRegistrationBean<PeerReplicationMetricsFilter> registration =
+            new FilterRegistrationBean<>(new PeerReplicationMetricsFilter(meterRegistry, objectMapper));
+        registration.addUrlPatterns("/eureka/peerreplication/*");
+        registration.setOrder(1);
+        return registration;
+    }
 }
@@ -0,0 +1,97 @@
+package deors.demos.microservices.eurekaservice;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingRequestWrapper;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Measures the batches of changes replicated to this node by its peers: how many changes
+ * every batch carries, by action, and for registrations how long after the registration at
+ * the peer they arrived here. The registration time is set by the peer, so the lag is only
+ * meaningful while the clocks of the nodes are in sync, as when they run on the same host.
+ */
+public class PeerReplicationMetricsFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(PeerReplicationMetricsFilter.class);
+
+    private static final String REGISTER = "Register";
+
+    private final MeterRegistry meterRegistry;
+
+    private final ObjectMapper objectMapper;
+
+    private final DistributionSummary batchSize;
+
+    private final Timer lag;
+
+    public PeerReplicationMetricsFilter(MeterRegistry meterRegistry, ObjectMapper objectMapper) {
+        this.meterRegistry = meterRegistry;
+        this.objectMapper = objectMapper;
+        this.batchSize = DistributionSummary.builder("eureka.server.replication.batch.size")
+            .description("Changes in every batch replicated to this node by its peers")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.lag = Timer.builder("eureka.server.replication.lag")
+            .description("Time from a registration at a peer until it was replicated to this node")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ContentCachingRequestWrapper cachingRequest = new ContentCachingRequestWrapper(request);
+        filterChain.doFilter(cachingRequest, response);
+        // read once Jersey has consumed the body, and never failing the replication because of it
+        try {
+            record(cachingRequest.getContentAsByteArray(), "gzip".equals(request.getHeader("Content-Encoding")),
+                System.currentTimeMillis());
+        } catch (IOException | RuntimeException e) {
+            logger.debug("replication batch could not be measured", e);
+        }
+    }
+
+    void record(byte[] body, boolean gzipped, long now) throws IOException {
+        if (body.length == 0) {
+            return;
+        }
+        JsonNode changes;
+        try (InputStream in = gzipped ? new GZIPInputStream(new ByteArrayInputStream(body)) : new ByteArrayInputStream(body)) {
+            changes = objectMapper.readTree(in).path("replicationList");
+        }
+        batchSize.record(changes.size());
+        for (JsonNode change : changes) {
+            String action = change.path("action").asText();
+            Counter.builder("eureka.server.replication.changes")
+                .tag("action", action.toLowerCase(Locale.ROOT))
+                .description("Changes replicated to this node by its peers, by action")
+                .register(meterRegistry)
+                .increment();
+            long registeredAt = change.path("instanceInfo").path("lastUpdatedTimestamp").asLong();
+            if (REGISTER.equals(action) && registeredAt > 0) {
+                lag.record(Math.max(0, now - registeredAt), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package deors.demos.microservices.eurekaservice;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Simulates Eureka clients against a running server through its REST API. Instances are
+ * registered in steps, and after every step each simulated client sends a heartbeat and
+ * fetches the registry delta, as real clients do every 30 seconds, while a few of them fetch
+ * the full registry. Fetch latencies are measured here; the response cache hit ratio, CPU
+ * and heap are read from the actuator metrics of the server, heap as growth over the heap
+ * used before the first step, which is only indicative as it also depends on collections.
+ */
+public class EurekaLoadGenerator implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(EurekaLoadGenerator.class);
+
+    private static final String VALUE = "VALUE|COUNT";
+
+    private static final String INSTANCE = "{\"instance\":{"
+        + "\"instanceId\":\"%2$s\",\"app\":\"%1$s\",\"hostName\":\"%2$s\",\"ipAddr\":\"10.0.%3$d.%4$d\","
+        + "\"status\":\"UP\",\"port\":{\"$\":8080,\"@enabled\":\"true\"},"
+        + "\"vipAddress\":\"%1$s\",\"secureVipAddress\":\"%1$s\","
+        + "\"dataCenterInfo\":{\"@class\":\"com.netflix.appinfo.InstanceInfo$DefaultDataCenterInfo\",\"name\":\"MyOwn\"},"
+        + "\"leaseInfo\":{\"renewalIntervalInSecs\":30,\"durationInSecs\":90},"
+        + "\"metadata\":{\"zone\":\"zone%5$d\"}}}";
+
+    private final String serverUrl;
+
+    private final int applications;
+
+    private final ExecutorService executor;
+
+    private final HttpClient httpClient;
+
+    private int registered;
+
+    private double baselineHeapBytes;
+
+    public EurekaLoadGenerator(String serverUrl, int applications, int concurrency) {
+        this.serverUrl = serverUrl.endsWith("/") ? serverUrl : serverUrl + "/";
+        this.applications = applications;
+        this.executor = Executors.newFixedThreadPool(concurrency);
+        // not sharing the executor, whose threads wait for the responses
+        this.httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    }
+
+    private static String application(int instance, int applications) {
+        return "SCALE-APP-" + instance % applications;
+    }
+
+    private static String instanceId(int instance) {
+        return "scale-instance-" + instance;
+    }
+
+    public List<Stage> run(int maxInstances, int step, int fullFetches) throws Exception {
+        List<Stage> stages = new ArrayList<>();
+        baselineHeapBytes = metric("jvm.memory.used", "area:heap");
+        while (registered < maxInstances) {
+            int target = Math.min(registered + step, maxInstances);
+            register(registered, target);
+            registered = target;
+            stages.add(round(fullFetches));
+            logger.info(stages.get(stages.size() - 1).toString());
+        }
+        return stages;
+    }
+
+    public void register(int from, int to) throws Exception {
+        List<Callable<Integer>> calls = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            String app = application(i, applications);
+            String body = String.format(INSTANCE, app, instanceId(i), i / 250 % 250, i % 250 + 1, i % 3 + 1);
+            HttpRequest request = HttpRequest.newBuilder(URI.create(serverUrl + "eureka/apps/" + app))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+            calls.add(() -> send(request, 204));
+        }
+        invokeAll(calls);
+    }
+
+    private Stage round(int fullFetches) throws Exception {
+        double hitsBefore = cacheHits();
+        double fetchesBefore = fetches();
+        List<Callable<Integer>> heartbeats = new ArrayList<>();
+        List<Long> deltaLatencies = Collections.synchronizedList(new ArrayList<>());
+        List<Callable<Integer>> deltas = new ArrayList<>();
+        for (int i = 0; i < registered; i++) {
+            URI instance = instanceUri(i);
+            heartbeats.add(() -> send(HttpRequest.newBuilder(instance)
+                .PUT(HttpRequest.BodyPublishers.noBody()).build(), 200));
+            deltas.add(() -> timed(fetch("eureka/apps/delta"), deltaLatencies, null));
+        }
+        long start = System.nanoTime();
+        invokeAll(heartbeats);
+        invokeAll(deltas);
+        List<Long> fullLatencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicLong fullBytes = new AtomicLong();
+        List<Callable<Integer>> fulls = new ArrayList<>();
+        for (int i = 0; i < fullFetches; i++) {
+            fulls.add(() -> timed(fetch("eureka/apps"), fullLatencies, fullBytes));
+        }
+        invokeAll(fulls);
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        double fetches = fetches() - fetchesBefore;
+        double hitRatio = fetches == 0 ? 0 : (cacheHits() - hitsBefore) / fetches;
+        return new Stage(registered, percentile(deltaLatencies, 0.5), percentile(deltaLatencies, 0.99),
+            percentile(fullLatencies, 0.5), percentile(fullLatencies, 0.99),
+            fullFetches == 0 ? 0 : fullBytes.get() / fullFetches, hitRatio,
+            (2 * registered + fullFetches) / elapsedSeconds,
+            metric("process.cpu.usage", null), metric("jvm.memory.used", "area:heap") - baselineHeapBytes,
+            metric("eureka.server.registry.instances", null));
+    }
+
+    private HttpRequest fetch(String path) {
+        return HttpRequest.newBuilder(URI.create(serverUrl + path))
+            .header("Accept", "application/json")
+            .header("Accept-Encoding", "gzip")
+            .GET()
+            .build();
+    }
+
+    private int send(HttpRequest request, int expectedStatus) throws IOException, InterruptedException {
+        int status = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        if (status != expectedStatus) {
+            throw new IllegalStateException(request.method() + " " + request.uri() + " answered " + status);
+        }
+        return status;
+    }
+
+    private int timed(HttpRequest request, List<Long> latencies, AtomicLong bytes) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        latencies.add(System.nanoTime() - start);
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("GET " + request.uri() + " answered " + response.statusCode());
+        }
+        if (bytes != null) {
+            bytes.addAndGet(response.body().length);
+        }
+        return response.statusCode();
+    }
+
+    private void invokeAll(List<Callable<Integer>> calls) throws Exception {
+        for (Future<Integer> result : executor.invokeAll(calls)) {
+            result.get();
+        }
+    }
+
+    private double fetches() throws IOException, InterruptedException {
+        return metric("eureka.server.operations", "operation:get_all") + metric("eureka.server.operations", "operation:get_all_delta");
+    }
+
+    private double cacheHits() throws IOException, InterruptedException {
+        return fetches() - metric("eureka.server.operations", "operation:get_all_cache_miss")
+            - metric("eureka.server.operations", "operation:get_all_cache_miss_delta");
+    }
+
+    public double metric(String name, String tag) throws IOException, InterruptedException {
+        return metric(name, tag, VALUE);
+    }
+
+    public double metric(String name, String tag, String statistic) throws IOException, InterruptedException {
+        String query = tag == null ? "" : "?tag=" + URLEncoder.encode(tag, StandardCharsets.UTF_8);
+        HttpResponse<String> response = httpClient.send(
+            HttpRequest.newBuilder(URI.create(serverUrl + "actuator/metrics/" + name + query)).GET().build(),
+            HttpResponse.BodyHandlers.ofString());
+        Matcher matcher = Pattern.compile("\"statistic\":\"(?:" + statistic + ")\",\"value\":([0-9.Ee+-]+)")
+            .matcher(response.body());
+        return response.statusCode() == 200 && matcher.find() ? Double.parseDouble(matcher.group(1)) : Double.NaN;
+    }
+
+    private static long percentile(List<Long> latencies, double percentile) {
+        if (latencies.isEmpty()) {
+            return 0;
+        }
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return TimeUnit.NANOSECONDS.toMicros(sorted.get(Math.max(index, 0)));
+    }
+
+    public void renew(int from, int to) throws Exception {
+        List<Callable<Integer>> calls = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            URI instance = instanceUri(i);
+            calls.add(() -> send(HttpRequest.newBuilder(instance).PUT(HttpRequest.BodyPublishers.noBody()).build(), 200));
+        }
+        invokeAll(calls);
+    }
+
+    public void deregister(int from, int to) throws Exception {
+        List<Callable<Integer>> calls = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            URI instance = instanceUri(i);
+            calls.add(() -> send(HttpRequest.newBuilder(instance).DELETE().build(), 200));
+        }
+        invokeAll(calls);
+    }
+
+    public void deregisterAll() throws Exception {
+        deregister(0, registered);
+        registered = 0;
+    }
+
+    // whether the instance is in the registry of the server, which is not served from the response cache
+    public boolean isRegistered(int instance) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(instanceUri(instance)).header("Accept", "application/json").GET().build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+    }
+
+    private URI instanceUri(int instance) {
+        return URI.create(serverUrl + "eureka/apps/" + application(instance, applications) + "/" + instanceId(instance));
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    public static class Stage {
+
+        private final int instances;
+
+        private final long deltaP50Micros;
+
+        private final long deltaP99Micros;
+
+        private final long fullP50Micros;
+
+        private final long fullP99Micros;
+
+        private final long fullBytes;
+
+        private final double cacheHitRatio;
+
+        private final double requestsPerSecond;
+
+        private final double cpuUsage;
+
+        private final double heapGrowthBytes;
+
+        private final double registeredOnServer;
+
+        private Stage(int instances, long deltaP50Micros, long deltaP99Micros, long fullP50Micros, long fullP99Micros,
+                long fullBytes, double cacheHitRatio, double requestsPerSecond, double cpuUsage, double heapGrowthBytes,
+                double registeredOnServer) {
+            this.instances = instances;
+            this.deltaP50Micros = deltaP50Micros;
+            this.deltaP99Micros = deltaP99Micros;
+            this.fullP50Micros = fullP50Micros;
+            this.fullP99Micros = fullP99Micros;
+            this.fullBytes = fullBytes;
+            this.cacheHitRatio = cacheHitRatio;
+            this.requestsPerSecond = requestsPerSecond;
+            this.cpuUsage = cpuUsage;
+            this.heapGrowthBytes = heapGrowthBytes;
+            this.registeredOnServer = registeredOnServer;
+        }
+
+        public int getInstances() {
+            return instances;
+        }
+
+        public double getCacheHitRatio() {
+            return cacheHitRatio;
+        }
+
+        public double getRegisteredOnServer() {
+            return registeredOnServer;
+        }
+
+        public long getDeltaP99Micros() {
+            return deltaP99Micros;
+        }
+
+        @Override
+        public String toString() {
+            double thousands = instances / 1000.0;
+            return String.format("%d instances: delta fetch p50 %.1f ms p99 %.1f ms, full fetch p50 %.1f ms p99 %.1f ms"
+                + " (%d KB gzip), response cache hit ratio %.3f, %.0f requests/s,"
+                + " server cpu %.1f%% (%.1f%% per 1k instances), heap growth %.1f MB (%.1f MB per 1k instances)",
+                instances, deltaP50Micros / 1000.0, deltaP99Micros / 1000.0, fullP50Micros / 1000.0,
+                fullP99Micros / 1000.0, fullBytes / 1024, cacheHitRatio, requestsPerSecond,
+                cpuUsage * 100, cpuUsage * 100 / thousands, heapGrowthBytes / (1024 * 1024),
+                heapGrowthBytes / (1024 * 1024) / thousands);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package deors.demos.microservices.eurekaservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.web.server.LocalServerPort;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = {
+    "eureka.client.register-with-eureka=false",
+    "eureka.client.fetch-registry=false",
+    "eureka.server.wait-time-in-ms-when-sync-empty=0",
+    "management.endpoints.web.exposure.include=health,metrics" })
+public class EurekaRegistryLoadIntegrationTest {
+
+    private static final int INSTANCES = Integer.getInteger("test.scale.instances", 600);
+
+    private static final int STEP = Integer.getInteger("test.scale.step", 300);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private long requests(String operation) {
+
+        return meterRegistry.get("eureka.server.requests").tag("operation", operation).timers().stream()
+            .mapToLong(timer -> timer.count()).sum();
+    }
+
+    @Test
+    public void testRegistryUnderLoad() throws Exception {
+
+        try (EurekaLoadGenerator generator = new EurekaLoadGenerator("http://localhost:" + port, 20, 16)) {
+            List<EurekaLoadGenerator.Stage> stages = generator.run(INSTANCES, STEP, 5);
+
+            for (EurekaLoadGenerator.Stage stage : stages) {
+                assertEquals(stage.getInstances(), stage.getRegisteredOnServer(),
+                    "every simulated instance should be registered");
+            }
+            assertTrue(stages.get(stages.size() - 1).getCacheHitRatio() > 0.5,
+                "most fetches should be served from the response cache");
+            assertEquals(INSTANCES, requests("register"), "registrations should be timed");
+            assertTrue(requests("renew") >= INSTANCES, "heartbeats should be timed");
+            assertTrue(requests("fetch.delta") >= INSTANCES, "delta fetches should be timed");
+            assertTrue(requests("fetch") >= 5, "full fetches should be timed");
+
+            generator.deregisterAll();
+            assertEquals(INSTANCES, requests("cancel"), "cancellations should be timed");
+        }
+    }
+
+    @Test
+    public void testOperations() {
+
+        assertEquals("fetch", EurekaRequestMetricsFilter.operationOf("GET", "/eureka/apps/"));
+        assertEquals("fetch.delta", EurekaRequestMetricsFilter.operationOf("GET", "/eureka/apps/delta"));
+        assertEquals("fetch.application", EurekaRequestMetricsFilter.operationOf("GET", "/eureka/apps/BOOKRECSERVICE"));
+        assertEquals("register", EurekaRequestMetricsFilter.operationOf("POST", "/eureka/apps/BOOKRECSERVICE"));
+        assertEquals("renew", EurekaRequestMetricsFilter.operationOf("PUT", "/eureka/apps/BOOKRECSERVICE/host:8080"));
+        assertEquals("cancel", EurekaRequestMetricsFilter.operationOf("DELETE", "/eureka/apps/BOOKRECSERVICE/host:8080"));
+        assertEquals("status", EurekaRequestMetricsFilter.operationOf("PUT", "/eureka/apps/BOOKRECSERVICE/host:8080/status"));
+        assertEquals("replication", EurekaRequestMetricsFilter.operationOf("POST", "/eureka/peerreplication/batch/"));
+        assertEquals("other", EurekaRequestMetricsFilter.operationOf("GET", "/eureka/vips/bookrecservice"));
+    }
+}
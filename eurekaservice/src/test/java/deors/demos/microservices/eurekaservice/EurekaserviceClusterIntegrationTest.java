@@ -0,0 +1,205 @@
+package deors.demos.microservices.eurekaservice;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Starts a cluster of three Eureka nodes from the packaged service, with the cluster profile,
+ * and measures how long registrations take to be seen by every node, first after a burst of
+ * registrations and then while instances keep joining and leaving through every node. Every
+ * node runs in its own process, as Eureka keeps its server context in static fields.
+ * Opt-in with -Dtest.cluster.enabled=true, after packaging the service.
+ */
+@EnabledIfSystemProperty(named = "test.cluster.enabled", matches = "true")
+public class EurekaserviceClusterIntegrationTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(EurekaserviceClusterIntegrationTest.class);
+
+    private static final int NODES = 3;
+
+    private static final int BASE_PORT = Integer.getInteger("test.cluster.basePort", 17878);
+
+    private static final String JAR = System.getProperty("test.cluster.jar", "target/eurekaservice.jar");
+
+    private static final int INSTANCES = Integer.getInteger("test.cluster.instances", 300);
+
+    private static final int CHURN_ROUNDS = Integer.getInteger("test.cluster.churnRounds", 5);
+
+    private static final long START_TIMEOUT_MILLIS = Long.getLong("test.cluster.startTimeoutMillis", 60000);
+
+    private static final long MAX_CONVERGENCE_MILLIS = Long.getLong("test.cluster.maxConvergenceMillis", 10000);
+
+    // instances of every node are numbered from a different offset, so that each node registers and removes its own
+    private static final int NODE_OFFSET = 1000000;
+
+    private static final List<Process> nodes = new ArrayList<>();
+
+    private static final List<EurekaLoadGenerator> generators = new ArrayList<>();
+
+    private static String url(int node) {
+
+        return "http://localhost:" + (BASE_PORT + node) + "/";
+    }
+
+    @BeforeAll
+    public static void startCluster() throws Exception {
+
+        assertTrue(new File(JAR).isFile(), JAR + " should exist, run mvn package first");
+        List<String> peers = new ArrayList<>();
+        for (int node = 0; node < NODES; node++) {
+            peers.add(url(node) + "eureka/");
+        }
+        for (int node = 0; node < NODES; node++) {
+            ProcessBuilder builder = new ProcessBuilder(
+                System.getProperty("java.home") + "/bin/java", "-jar", JAR,
+                "--server.port=" + (BASE_PORT + node),
+                "--spring.profiles.active=cluster",
+                "--EUREKA_PEERS=" + String.join(",", peers),
+                // nodes only replicate, so that the registry holds the simulated instances alone
+                "--eureka.client.register-with-eureka=false",
+                "--eureka.client.fetch-registry=false",
+                "--eureka.server.wait-time-in-ms-when-sync-empty=0",
+                "--management.endpoints.web.exposure.include=health,metrics",
+                "--configchanges.enabled=false");
+            builder.redirectErrorStream(true);
+            builder.redirectOutput(new File("target/cluster-node-" + node + ".log"));
+            nodes.add(builder.start());
+            generators.add(new EurekaLoadGenerator(url(node), 20, 8));
+        }
+        HttpClient httpClient = HttpClient.newHttpClient();
+        for (int node = 0; node < NODES; node++) {
+            HttpRequest health = HttpRequest.newBuilder(URI.create(url(node) + "actuator/health")).build();
+            long deadline = System.currentTimeMillis() + START_TIMEOUT_MILLIS;
+            while (true) {
+                assertTrue(nodes.get(node).isAlive(),
+                    "node " + node + " exited, see target/cluster-node-" + node + ".log");
+                try {
+                    if (httpClient.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        break;
+                    }
+                } catch (java.io.IOException e) {
+                    // not listening yet
+                }
+                assertFalse(System.currentTimeMillis() > deadline, "node " + node + " should start within "
+                    + START_TIMEOUT_MILLIS + " ms, see target/cluster-node-" + node + ".log");
+                Thread.sleep(500);
+            }
+            logger.info("cluster node " + node + " started at " + url(node));
+        }
+    }
+
+    @AfterAll
+    public static void stopCluster() {
+
+        generators.forEach(EurekaLoadGenerator::close);
+        nodes.forEach(Process::destroy);
+    }
+
+    // milliseconds until every node holds the expected number of instances
+    private static long awaitConvergence(int expected) throws Exception {
+
+        long start = System.nanoTime();
+        while (true) {
+            boolean converged = true;
+            for (EurekaLoadGenerator generator : generators) {
+                converged &= generator.metric("eureka.server.registry.instances", null) == expected;
+            }
+            long elapsed = (System.nanoTime() - start) / 1000000;
+            if (converged || elapsed > 2 * MAX_CONVERGENCE_MILLIS) {
+                return elapsed;
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    private static int first(int node) {
+
+        return node * NODE_OFFSET;
+    }
+
+    @Test
+    public void testConvergence() throws Exception {
+
+        int perNode = INSTANCES / NODES;
+
+        // a burst of registrations spread over every node
+        for (int node = 0; node < NODES; node++) {
+            generators.get(node).register(first(node), first(node) + perNode);
+        }
+        long burst = awaitConvergence(perNode * NODES);
+        logger.info(perNode * NODES + " registrations seen by every node after " + burst + " ms");
+
+        // registration to visibility of single instances, registered at the first node and looked up at the others
+        List<Long> lags = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            int instance = first(NODES) + i;
+            long start = System.nanoTime();
+            generators.get(0).register(instance, instance + 1);
+            for (int node = 1; node < NODES; node++) {
+                while (!generators.get(node).isRegistered(instance)) {
+                    Thread.sleep(5);
+                }
+            }
+            lags.add((System.nanoTime() - start) / 1000000);
+        }
+        generators.get(0).deregister(first(NODES), first(NODES) + 20);
+        Collections.sort(lags);
+        logger.info("registration to visibility at every peer: p50 " + lags.get(lags.size() / 2)
+            + " ms, max " + lags.get(lags.size() - 1) + " ms");
+
+        // churn: in every round, every node registers new instances, removes its oldest ones and renews the rest
+        int churn = Math.max(1, perNode / 5);
+        int oldest = 0;
+        for (int round = 0; round < CHURN_ROUNDS; round++) {
+            for (int node = 0; node < NODES; node++) {
+                EurekaLoadGenerator generator = generators.get(node);
+                generator.register(first(node) + perNode + round * churn, first(node) + perNode + (round + 1) * churn);
+                generator.deregister(first(node) + oldest, first(node) + oldest + churn);
+                generator.renew(first(node) + oldest + churn, first(node) + perNode + (round + 1) * churn);
+            }
+            oldest += churn;
+        }
+        long afterChurn = awaitConvergence(perNode * NODES);
+        logger.info("registry of every node converged " + afterChurn + " ms after " + CHURN_ROUNDS
+            + " rounds of churn of " + churn * NODES + " instances");
+
+        for (int node = 0; node < NODES; node++) {
+            EurekaLoadGenerator generator = generators.get(node);
+            double batches = generator.metric("eureka.server.replication.batch.size", null, "COUNT");
+            double changes = generator.metric("eureka.server.replication.batch.size", null, "TOTAL");
+            logger.info(String.format("node %d: %.0f replication batches received, %.1f changes per batch (max %.0f),"
+                + " replication lag mean %.1f ms, max %.1f ms", node, batches, changes / batches,
+                generator.metric("eureka.server.replication.batch.size", null, "MAX"),
+                1000 * generator.metric("eureka.server.replication.lag", null, "TOTAL_TIME")
+                    / generator.metric("eureka.server.replication.lag", null, "COUNT"),
+                1000 * generator.metric("eureka.server.replication.lag", null, "MAX")));
+            assertTrue(batches > 0, "node " + node + " should receive changes from its peers");
+        }
+
+        assertTrue(burst <= MAX_CONVERGENCE_MILLIS,
+            "every node should see a burst of registrations within " + MAX_CONVERGENCE_MILLIS + " ms");
+        assertTrue(afterChurn <= MAX_CONVERGENCE_MILLIS,
+            "every node should converge after churn within " + MAX_CONVERGENCE_MILLIS + " ms");
+
+        for (int node = 0; node < NODES; node++) {
+            int last = first(node) + perNode + CHURN_ROUNDS * churn;
+            generators.get(node).deregister(first(node) + oldest, last);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package deors.demos.microservices.eurekaservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// opt-in with -Dtest.scale.enabled=true, as it loads the target server with thousands of instances
+@EnabledIfSystemProperty(named = "test.scale.enabled", matches = "true")
+public class EurekaserviceScaleIntegrationTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(EurekaserviceScaleIntegrationTest.class);
+
+    private static final int INSTANCES = Integer.getInteger("test.scale.instances", 5000);
+
+    private static final int STEP = Integer.getInteger("test.scale.step", 1000);
+
+    private static final int APPLICATIONS = Integer.getInteger("test.scale.applications", 50);
+
+    private static final int CONCURRENCY = Integer.getInteger("test.scale.concurrency", 32);
+
+    protected static String TARGET_SERVER_URL;
+
+    @BeforeAll
+    public static void initEnvironment() {
+
+        TARGET_SERVER_URL = getConfigurationProperty(
+            "TARGET_SERVER_URL", "test.target.server.url", "http://localhost:7878/");
+
+        logger.info("using target server at: " + TARGET_SERVER_URL);
+    }
+
+    private static String getConfigurationProperty(String envKey, String sysKey, String defValue) {
+
+        String retValue = defValue;
+        String envValue = System.getenv(envKey);
+        String sysValue = System.getProperty(sysKey);
+        // system property prevails over environment variable
+        if (sysValue != null) {
+            retValue = sysValue;
+        } else if (envValue != null) {
+            retValue = envValue;
+        }
+        return retValue;
+    }
+
+    @Test
+    public void testRegistryScale() throws Exception {
+
+        try (EurekaLoadGenerator generator = new EurekaLoadGenerator(TARGET_SERVER_URL, APPLICATIONS, CONCURRENCY)) {
+            assertFalse(Double.isNaN(generator.metric("eureka.server.registry.instances", null)),
+                "the target server should expose the metrics actuator endpoint");
+
+            List<EurekaLoadGenerator.Stage> stages = generator.run(INSTANCES, STEP, 20);
+            generator.deregisterAll();
+
+            for (EurekaLoadGenerator.Stage stage : stages) {
+                assertEquals(stage.getInstances(), stage.getRegisteredOnServer(),
+                    "every simulated instance should be registered");
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package deors.demos.microservices.eurekaservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class PeerReplicationMetricsFilterTest {
+
+    private static final long NOW = 1700000000000L;
+
+    private static final String BATCH = "{\"replicationList\":["
+        + "{\"appName\":\"BOOKRECSERVICE\",\"id\":\"host1:8080\",\"action\":\"Register\","
+        + "\"instanceInfo\":{\"instanceId\":\"host1:8080\",\"lastUpdatedTimestamp\":\"" + (NOW - 250) + "\"}},"
+        + "{\"appName\":\"BOOKRECSERVICE\",\"id\":\"host2:8080\",\"action\":\"Heartbeat\"},"
+        + "{\"appName\":\"BOOKRECSERVICE\",\"id\":\"host3:8080\",\"action\":\"Cancel\"}]}";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final PeerReplicationMetricsFilter filter = new PeerReplicationMetricsFilter(meterRegistry, new ObjectMapper());
+
+    private void assertRecorded() {
+
+        assertEquals(3, meterRegistry.get("eureka.server.replication.batch.size").summary().totalAmount(),
+            "every change in the batch should be counted");
+        assertEquals(1, meterRegistry.get("eureka.server.replication.changes").tag("action", "heartbeat").counter().count(),
+            "changes should be counted by action");
+        assertEquals(250, meterRegistry.get("eureka.server.replication.lag").timer().max(TimeUnit.MILLISECONDS),
+            "the lag of registrations should be the time since they were registered at the peer");
+        assertEquals(1, meterRegistry.get("eureka.server.replication.lag").timer().count(),
+            "only registrations should have a lag");
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+
+        filter.record(BATCH.getBytes(StandardCharsets.UTF_8), false, NOW);
+
+        assertRecorded();
+    }
+
+    @Test
+    public void testGzippedBatch() throws Exception {
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(body)) {
+            gzip.write(BATCH.getBytes(StandardCharsets.UTF_8));
+        }
+
+        filter.record(body.toByteArray(), true, NOW);
+
+        assertRecorded();
+    }
+}
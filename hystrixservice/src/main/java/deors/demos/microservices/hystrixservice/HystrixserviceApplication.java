@@ -3,7 +3,7 @@ package deors.demos.microservices.hystrixservice;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
-@SpringBootApplication
+@SpringBootApplication(scanBasePackages = { "deors.demos.microservices.hystrixservice", "deors.demos.microservices.common" })
 @org.springframework.cloud.client.discovery.EnableDiscoveryClient
 @org.springframework.cloud.netflix.hystrix.dashboard.EnableHystrixDashboard
 public class HystrixserviceApplication {